@@ -1,14 +1,10 @@
 package agents;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
-
-import wumpus.Agent;
 import wumpus.Environment;
 import wumpus.Environment.Action;
+import wumpus.PlanningAgent;
 import wumpus.Player;
-import wumpus.Player.Direction;
+import wumpus.TranspositionTable;
 
 /**
  * An Agent that implements a basic heuristic strategy. The heuristic actions are as following:
@@ -18,16 +14,53 @@ import wumpus.Player.Direction;
  * H4: If do not have gold, choose the branch the non visited branch with less turns to take;
  * H5: Choose the path that surely does not have a danger;
  * H5: If have found the gold get back by the visited path;
+ * <p>
+ * The decisions do not allocate: the board knowledge is kept at flat arrays indexed by the tile
+ * linear position, the branches are evaluated in the clockwise order {N, E, S, W} and the
+ * planned actions are queued at a reusable buffer.
+ * <p>
+ * The decisions can be shared with other instances through a {@link TranspositionTable}, keyed
+ * by a hash of the board knowledge that is updated at each change, along with the position,
+ * direction and perceptions of the player.
  */
-public class HeuristicAgent implements Agent {
+public class HeuristicAgent implements PlanningAgent {
+    private static final Action[] ACTIONS = Action.values();
+    private static final int MAX_PLAN_LENGTH = 3;
+
+    /**
+     * The horizontal and vertical offsets of each side in clockwise order {N, E, S, W}.
+     */
+    private static final int[] OFFSET_X = {0, 1, 0, -1};
+    private static final int[] OFFSET_Y = {-1, 0, 1, 0};
+
+    /**
+     * The turns to face a side indexed by the clockwise distance from the current direction to
+     * the side, positive turns to the left and negative to the right.
+     */
+    private static final int[] TURNS = {0, -1, 2, 1};
+
     private int w, h;
 
     private boolean debug = true;
-    private double[][] dangers;
-    private boolean[][] visited;
-    private boolean[][] shoot;
+    private int visitedCost = 5;
+    private int returnCost = 5;
+    private int frontierCost = 10;
+    private int dangerCost = 100;
+    private double breezeDanger = 0.5;
 
-    private LinkedList<Action> nextActions = new LinkedList<Action>();
+    private double[] dangers;
+    private boolean[] visited;
+    private boolean[] shoot;
+
+    private final int[] branches = new int[4];
+    private final int[] sides = new int[4];
+
+    private final int[] nextActions = new int[MAX_PLAN_LENGTH];
+    private int nextHead = 0;
+    private int nextLength = 0;
+
+    private TranspositionTable table;
+    private long knowledge = 0;
 
     /**
      * The strategy constructor.
@@ -37,9 +70,9 @@ public class HeuristicAgent implements Agent {
     public HeuristicAgent(int width, int height) {
         w = width;
         h = height;
-        dangers = new double[w][h];
-        visited = new boolean[w][h];
-        shoot = new boolean[w][h];
+        dangers = new double[w * h];
+        visited = new boolean[w * h];
+        shoot = new boolean[w * h];
     }
 
     /**
@@ -50,6 +83,56 @@ public class HeuristicAgent implements Agent {
         debug = value;
     }
 
+    /**
+     * Sets the extra cost of going back to a visited tile while looking for the gold.
+     * @param value The cost
+     */
+    public void setVisitedCost(int value) {
+        visitedCost = value;
+    }
+
+    /**
+     * Sets the discount of going back to a visited tile once the gold was found.
+     * @param value The discount
+     */
+    public void setReturnCost(int value) {
+        returnCost = value;
+    }
+
+    /**
+     * Sets the extra cost of entering a not visited tile that may have a danger.
+     * @param value The cost
+     */
+    public void setFrontierCost(int value) {
+        frontierCost = value;
+    }
+
+    /**
+     * Sets the extra cost of entering a tile that surely has a danger.
+     * @param value The cost
+     */
+    public void setDangerCost(int value) {
+        dangerCost = value;
+    }
+
+    /**
+     * Sets how much each breeze increases the danger estimate of the not visited neighbors, a
+     * tile is sure to have a danger once its estimate reaches 1.
+     * @param value The danger increment between 0 and 1
+     */
+    public void setBreezeDanger(double value) {
+        breezeDanger = value;
+    }
+
+    /**
+     * Sets the table to share the decisions with the other agents with the same board size and
+     * costs, must be set before the first action.
+     * @param value The table or <tt>null</tt> to always decide
+     */
+    public void setTranspositionTable(TranspositionTable value) {
+        table = value;
+    }
+
     /**
      * Prints the player board and debug message.
      * @param player The player instance
@@ -84,262 +167,326 @@ public class HeuristicAgent implements Agent {
      * @return The next action
      */
     public Action getAction(Player player) {
-        // Mark this block has visited
-        int x = player.getX();
-        int y = player.getY();
-
         // Set this block as visited
-        visited[x][y] = true;
+        setVisited(player.getX() + player.getY() * w);
 
         // Apply actions pools
-        if (nextActions.size() > 0) {
-            return nextActions.poll();
+        if (nextLength == 0) {
+            decide(player);
         }
+        nextLength--;
+        return ACTIONS[nextActions[nextHead++]];
+    }
+
+    /**
+     * Implements the player artificial intelligence strategy, committing to all the actions
+     * needed to reach the chosen tile at once.
+     * @param player The player instance
+     * @param plan The buffer to write the actions
+     * @return The number of actions
+     */
+    public int getPlan(Player player, Action[] plan) {
+        // Set this block as visited
+        setVisited(player.getX() + player.getY() * w);
+
+        if (nextLength == 0) {
+            decide(player);
+        }
+        int length = 0;
+        while (nextLength > 0 && length < plan.length) {
+            plan[length++] = ACTIONS[nextActions[nextHead++]];
+            nextLength--;
+        }
+        return length;
+    }
+
+    /**
+     * Chooses the next tile to go and queues the actions to get there.
+     * @param player The player instance
+     */
+    private void decide(Player player) {
+        int x = player.getX();
+        int y = player.getY();
+        nextHead = 0;
 
         // Grab the gold if senses glitter
-        if (player.hasGlitter()) return Action.GRAB;
+        if (player.hasGlitter()) {
+            push(Action.GRAB);
+            return;
+        }
 
         // Calculate the neighbor branches
-        int[][] branches = getNeighbors(x, y);
+        int count = getNeighbors(x, y);
+
+        // Reuse the decision taken at the same state
+        long key = 0;
+        if (table != null) {
+            key = getDecisionKey(player);
+            int decision = table.get(key);
+            if (decision != TranspositionTable.MISS) {
+                replay(player, count, decision);
+                return;
+            }
+        }
 
         // Shoot an arrow to every non visited tiles if senses a stench
         if (player.hasStench() && player.hasArrows()) {
             // Apply killer instinct
-            for(int[] branch : branches) {
-                if (!visited[branch[0]][branch[1]] && !shoot[branch[0]][branch[1]]) {
-                    shoot[branch[0]][branch[1]] = true;
-
-                    ArrayList<Action> actions = getActionsToShoot(player, branch);
-                    nextActions.addAll(actions);
-                    return nextActions.poll();
+            for (int i = 0; i < count; i++) {
+                int branch = branches[i];
+                if (!visited[branch] && !shoot[branch]) {
+                    setShoot(branch);
+                    if (table != null) table.put(key, sides[i] << 1 | 1);
+                    pushActionsTo(player, sides[i], Action.SHOOT_ARROW);
+                    return;
                 }
             }
         }
 
+        updateDangers(player, count);
+
+        // Evaluate the cost of neighbor branches
+        int currentCost = Integer.MAX_VALUE;
+        int next = -1;
+        for (int i = 0; i < count; i++) {
+            int cost = getCost(player, branches[i], sides[i]);
+            if (cost < currentCost) {
+                currentCost = cost;
+                next = i;
+            }
+        }
+        // Print the chosen tile
+        if (debug) {
+            System.out.format("Go to (%d,%d)%n", branches[next] % w, branches[next] / w);
+        }
+        if (table != null) table.put(key, sides[next] << 1);
+
+        // Execute the action to get to the branch with less cost
+        pushActionsTo(player, sides[next], Action.GO_FORWARD);
+    }
+
+    /**
+     * Repeats a decision taken at the same state, along with its changes to the board knowledge.
+     * @param player The player instance
+     * @param count The number of branches
+     * @param decision The side of the chosen tile and weather to shoot it
+     */
+    private void replay(Player player, int count, int decision) {
+        int side = decision >>> 1;
+        if ((decision & 1) != 0) {
+            for (int i = 0; i < count; i++) {
+                if (sides[i] == side) setShoot(branches[i]);
+            }
+            pushActionsTo(player, side, Action.SHOOT_ARROW);
+        } else {
+            updateDangers(player, count);
+            pushActionsTo(player, side, Action.GO_FORWARD);
+        }
+    }
+
+    /**
+     * Updates the danger estimates of the neighbor branches from the breeze.
+     * @param player The player instance
+     * @param count The number of branches
+     */
+    private void updateDangers(Player player, int count) {
         // Mark non visited neighbors has dangerous
         if (player.hasBreeze()) {
             boolean knowPitPosition = false;
             // Verify if a pit was already found
-            for(int[] branch : branches) {
-                if (dangers[branch[0]][branch[1]] == 1) {
+            for (int i = 0; i < count; i++) {
+                if (dangers[branches[i]] >= 1) {
                     knowPitPosition = true;
                     break;
                 }
             }
             // Estimate the pit location
             if (!knowPitPosition) {
-                // Increase by 50% the probability of having some danger
-                for(int[] branch : branches) {
-                    if (!visited[branch[0]][branch[1]]) {
-                        if (dangers[branch[0]][branch[1]] < 1) {
-                            dangers[branch[0]][branch[1]] += 0.5;
+                // Increase the probability of having some danger
+                for (int i = 0; i < count; i++) {
+                    int branch = branches[i];
+                    if (!visited[branch]) {
+                        if (dangers[branch] < 1) {
+                            setDanger(branch, Math.min(1, dangers[branch] + breezeDanger));
                         }
                         // Pit was found
-                        if (dangers[branch[0]][branch[1]] == 1) {
+                        if (dangers[branch] >= 1) {
                             knowPitPosition = true;
                         }
                     }
                 }
                 // If a pit was found clear the dangers from other tiles
                 if (knowPitPosition) {
-                    for (int[] branch : branches) {
-                        if (dangers[branch[0]][branch[1]]  < 1) {
-                            dangers[branch[0]][branch[1]] = 0.0;
+                    for (int i = 0; i < count; i++) {
+                        if (dangers[branches[i]] < 1) {
+                            setDanger(branches[i], 0.0);
                         }
                     }
                 }
             }
         } else {
             // From this tile nothing has sensed so set the neighbors to dangers
-            for (int[] branch : branches) {
-                if (dangers[branch[0]][branch[1]] < 1) {
-                    dangers[branch[0]][branch[1]] = 0.0;
+            for (int i = 0; i < count; i++) {
+                if (dangers[branches[i]] < 1) {
+                    setDanger(branches[i], 0.0);
                 }
             }
         }
+    }
 
-        // Evaluate the cost of neighbor branches
-        int currentCost = 999;
-        int[] next = {-1, -1};
-        for (int[] branch : branches) {
-            int cost = getCost(player, branch);
-            if(cost < currentCost) {
-                currentCost = cost;
-                next = branch;
-            }
-        }
-        // Print the chosen tile
-        if (debug) {
-            System.out.format("Go to (%d,%d)%n", next[0], next[1]);
-        }
+    /**
+     * Marks a tile as visited.
+     * @param index The tile linear position
+     */
+    private void setVisited(int index) {
+        if (visited[index]) return;
+        visited[index] = true;
+        if (table != null) knowledge ^= mix(index * 4L + 1);
+    }
 
-        // Execute the action to get to the branch with less cost
-        ArrayList<Action> actions = getActionsTo(player, next);
-        nextActions.addAll(actions);
+    /**
+     * Marks a tile as already shot.
+     * @param index The tile linear position
+     */
+    private void setShoot(int index) {
+        shoot[index] = true;
+        if (table != null) knowledge ^= mix(index * 4L + 2);
+    }
+
+    /**
+     * Sets the danger estimate of a tile.
+     * @param index The tile linear position
+     * @param value The danger estimate
+     */
+    private void setDanger(int index, double value) {
+        if (table != null) knowledge ^= getDangerHash(index, dangers[index]) ^
+                getDangerHash(index, value);
+        dangers[index] = value;
+    }
+
+    /**
+     * Returns the hash of a tile danger estimate, zero for no danger so the knowledge hash of an
+     * empty board is zero.
+     * @param index The tile linear position
+     * @param value The danger estimate
+     * @return The danger hash
+     */
+    private static long getDangerHash(int index, double value) {
+        return value == 0 ? 0 : mix(mix(index * 4L + 3) ^ Double.doubleToLongBits(value));
+    }
 
-        // Auto execute the first action
-        return nextActions.poll();
+    /**
+     * Returns the hash of everything the decision depends on: the board knowledge, the player
+     * position, direction and perceptions, the board size and the costs.
+     * @param player The player instance
+     * @return The decision key
+     */
+    private long getDecisionKey(Player player) {
+        long key = knowledge;
+        key = mix(key ^ (player.getX() + player.getY() * w));
+        key = mix(key ^ (player.getDirection().ordinal() |
+                (player.hasStench() ? 4 : 0) | (player.hasBreeze() ? 8 : 0) |
+                (player.hasArrows() ? 16 : 0) | (player.hasGold() ? 32 : 0)));
+        key = mix(key ^ ((long) w << 32 | h));
+        key = mix(key ^ ((long) visitedCost << 32 | returnCost));
+        key = mix(key ^ ((long) frontierCost << 32 | dangerCost));
+        return mix(key ^ Double.doubleToLongBits(breezeDanger));
     }
 
     /**
-     * Gets the adjacent tiles of the given coordinates.
+     * Mixes the bits of a value with the SplitMix64 finalizer.
+     * @param value The value
+     * @return The mixed value
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Sets the adjacent tiles of the given coordinates at the branches buffer, along with the
+     * side of each one.
      * @param x The tile X coordinate
      * @param y The tile Y coordinate
-     * @return An array of 2D coordinates
+     * @return The number of branches
      */
-    private int[][] getNeighbors(int x, int y) {
-        HashMap<Direction, Integer> nodesMap = new HashMap<Direction, Integer>();
-
-        // Calculate the next block
-        int north = y - 1;
-        int south = y + 1;
-        int east = x + 1;
-        int west = x - 1;
-
-        // Check if branch is into bounds
-        if (north >= 0) nodesMap.put(Direction.N, north);
-        if (south < h)  nodesMap.put(Direction.S, south);
-        if (east < w)   nodesMap.put(Direction.E, east);
-        if (west >= 0)  nodesMap.put(Direction.W, west);
-
-        // Build the branches array
-        int branch = 0;
-        int[][] nodes = new int[nodesMap.size()][2];
-        for (Direction direction : nodesMap.keySet()) {
-            switch (direction) {
-                case N: nodes[branch] = new int[]{x, north}; break;
-                case S: nodes[branch] = new int[]{x, south}; break;
-                case E: nodes[branch] = new int[]{east, y}; break;
-                case W: nodes[branch] = new int[]{west, y}; break;
+    private int getNeighbors(int x, int y) {
+        int count = 0;
+        for (int side = 0; side < 4; side++) {
+            int nx = x + OFFSET_X[side];
+            int ny = y + OFFSET_Y[side];
+            // Check if branch is into bounds
+            if (nx >= 0 && nx < w && ny >= 0 && ny < h) {
+                branches[count] = nx + ny * w;
+                sides[count] = side;
+                count++;
             }
-            branch++;
         }
-
-        return nodes;
+        return count;
     }
 
     /**
-     * Returns the amount of turns player need to take to get into given position.
+     * Returns the amount of turns player need to take to face the given side.
      * @param player The player's instance
-     * @param to The destination tile
-     * @return The number of turns
+     * @param side The side of the destination tile
+     * @return The number of turns, positive to the left and negative to the right
      */
-    private int getTurns(Player player, int[] to) {
-        // The current vector
-        int[] from = {1, 0};
-        switch (player.getDirection()) {
-            case N:
-                from[0] = 0;
-                from[1] = 1;
-                break;
-            case S:
-                from[0] = 0;
-                from[1] = -1;
-                break;
-            case W:
-                from[0] = -1;
-                from[1] = 0;
-                break;
-        }
-        // The destination vector
-        int[] dest = {to[0] - player.getX(), player.getY() - to[1]};
-        // The angle between the two vectors
-        double dotProduct = from[0] * dest[0] + from[1] * dest[1];
-        double lenProduct = Math.hypot(from[0], from[1]) * Math.hypot(dest[0], dest[1]);
-        double theta = Math.acos(dotProduct / lenProduct);
-        // Inverts when facing backwards
-        if (    player.getDirection() == Direction.N && getDirection(dest) == Direction.E ||
-                player.getDirection() == Direction.E && getDirection(dest) == Direction.S ||
-                player.getDirection() == Direction.S && getDirection(dest) == Direction.W ||
-                player.getDirection() == Direction.W && getDirection(dest) == Direction.N) {
-            theta *= -1;
-        }
-        // Count how many turns
-        return (int)(theta / (Math.PI / 2));
+    private int getTurns(Player player, int side) {
+        return TURNS[(side - player.getDirection().ordinal()) & 3];
     }
 
     /**
      * Returns the cost for to reach the given branch.
      * @param player The player's instance
-     * @param to The destination block coordinates
+     * @param to The destination block linear position
+     * @param side The side of the destination block
      * @return The cost estimation tho reach the tile
      */
-    private int getCost(Player player, int[] to) {
+    private int getCost(Player player, int to, int side) {
         // Start with at least one forward
         int sum = 1;
         // If found gold choose the safest path otherwise costs more to return
-        if (visited[to[0]][to[1]]) {
-            if (player.hasGold()) sum -= 5;
-            else sum += 5;
+        if (visited[to]) {
+            if (player.hasGold()) sum -= returnCost;
+            else sum += visitedCost;
         } else {
             // If senses a breeze avoid unvisited path
             if (player.hasBreeze()) {
-                if (dangers[to[0]][to[1]] < 1) {
-                    sum += 10;
-                } else if (dangers[to[0]][to[1]] == 1) {
+                if (dangers[to] < 1) {
+                    sum += frontierCost;
+                } else {
                     // Avoid tiles marked as 100% danger
-                    sum += 100;
+                    sum += dangerCost;
                 }
             }
         }
 
         // The amount fo turns to take
-        int turns = getTurns(player, to);
-        sum += Math.abs(turns);
+        sum += Math.abs(getTurns(player, side));
 
         return sum;
     }
 
     /**
-     * Returns the actions that player must take to reach the given destination.
+     * Queues the turns to face the given side followed by the final action.
      * @param player The player's instance
-     * @param to The destination tile coordinates
-     * @return An array of actions
+     * @param side The side of the destination tile
+     * @param action The action to take once facing the side
      */
-    private ArrayList<Action> getActionsTo(Player player, int[] to) {
-        ArrayList<Action> actions = new ArrayList<Action>();
-        int turns = getTurns(player, to);
+    private void pushActionsTo(Player player, int side, Action action) {
+        int turns = getTurns(player, side);
         for (int i = 0; i < Math.abs(turns); i++) {
-            if (turns < 0) actions.add(Action.TURN_RIGHT);
-            if (turns > 0) actions.add(Action.TURN_LEFT);
-
+            push(turns < 0 ? Action.TURN_RIGHT : Action.TURN_LEFT);
         }
-        // Go to the block
-        actions.add(Action.GO_FORWARD);
-
-        return actions;
-    }
-    
-    /**
-     * Returns the actions that player must take to reach the given destination.
-     * @param player The player's instance
-     * @param to The destination tile coordinates
-     * @return An array of actions
-     */
-    private ArrayList<Action> getActionsToShoot(Player player, int[] to) {
-        ArrayList<Action> actions = new ArrayList<Action>();
-        int turns = getTurns(player, to);
-        for (int i = 0; i < Math.abs(turns); i++) {
-            if (turns < 0) actions.add(Action.TURN_RIGHT);
-            if (turns > 0) actions.add(Action.TURN_LEFT);
-
-        }
-        // Go to the block
-        actions.add(Action.SHOOT_ARROW);
-
-        return actions;
+        push(action);
     }
 
     /**
-     * Returns the direction based on the vector coordinates
-     * @param coords The 2D coordinates
-     * @return The direction
+     * Queues an action at the plan buffer.
+     * @param action The action
      */
-    private Direction getDirection(int[] coords) {
-        if (coords[0] == +0 && coords[1] == +1) return Direction.N;
-        if (coords[0] == +1 && coords[1] == +0) return Direction.E;
-        if (coords[0] == +0 && coords[1] == -1) return Direction.S;
-        if (coords[0] == -1 && coords[1] == +0) return Direction.W;
-        return Direction.E;
+    private void push(Action action) {
+        nextActions[nextHead + nextLength++] = action.ordinal();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,232 @@
+package agents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import wumpus.Environment;
+import wumpus.Environment.Action;
+import wumpus.Player;
+import wumpus.World;
+
+/**
+ * Learns the action values of a {@link QLearningAgent} by self-play: the learner steps a world
+ * directly, exploring a random action at some of the steps, and moves the value of each action
+ * taken towards its reward plus the discounted best value of the next state. The reward is the
+ * score change of the step, except the gold only counts when it is brought back, so leaving the
+ * cave with the gold is not learned as a win. An episode cut by the step limit is not an end of
+ * the game, its last state keeps its value.
+ * <p>
+ * The parallel training gives each thread a copy of the table and merges the copies back every
+ * few thousand episodes, the episodes of each round are seeded by the round and the thread so
+ * the result does not depend on the scheduling.
+ */
+public class QLearning {
+    private static final Action[] ACTIONS = Action.values();
+    private static final long EXPLORATION_SALT = 0x2545F4914F6CDD1DL;
+    private static final int DEFAULT_SYNC_INTERVAL = 10000;
+
+    private final int width;
+    private final int height;
+    private final QTable table;
+    private int pits = 0;
+    private float rate = 0.1f;
+    private float discount = 0.99f;
+    private double exploration = 0.1;
+    private int syncInterval = DEFAULT_SYNC_INTERVAL;
+    private long episodes = 0;
+
+    /**
+     * The learner constructor, starting from an empty table.
+     * @param width The board width
+     * @param height The board height
+     */
+    public QLearning(int width, int height) {
+        this(new QTable(width, height));
+    }
+
+    /**
+     * The learner constructor, to keep training a table.
+     * @param table The action values
+     */
+    public QLearning(QTable table) {
+        this.width = table.getWidth();
+        this.height = table.getHeight();
+        this.table = table;
+    }
+
+    /**
+     * Sets the number of pits of the boards, zero for the world default.
+     * @param value The number of pits
+     */
+    public void setPits(int value) {
+        pits = value;
+    }
+
+    /**
+     * Sets how far each update moves a value towards its target.
+     * @param value The learning rate, between 0 and 1
+     */
+    public void setRate(float value) {
+        rate = value;
+    }
+
+    /**
+     * Sets the weight of the next state value at the targets.
+     * @param value The discount factor, between 0 and 1
+     */
+    public void setDiscount(float value) {
+        discount = value;
+    }
+
+    /**
+     * Sets the probability of taking a random action instead of the best one.
+     * @param value The exploration rate, between 0 and 1
+     */
+    public void setExploration(double value) {
+        exploration = value;
+    }
+
+    /**
+     * Sets the episodes each thread plays before the tables are merged.
+     * @param value The number of episodes
+     */
+    public void setSyncInterval(int value) {
+        syncInterval = value;
+    }
+
+    /**
+     * Returns the learned action values.
+     * @return The table instance
+     */
+    public QTable getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the number of episodes trained so far.
+     * @return The episodes count
+     */
+    public long getEpisodes() {
+        return episodes;
+    }
+
+    /**
+     * Trains at the current thread.
+     * @param count The number of episodes
+     * @param seed The seed of the layouts and the exploration
+     * @throws InterruptedException
+     */
+    public void train(long count, long seed) throws InterruptedException {
+        train(table, count, seed);
+        episodes += count;
+    }
+
+    /**
+     * Trains at parallel, each thread at its own copy of the table merged at every round.
+     * @param executor The executor to train the copies
+     * @param threads The number of copies of each round
+     * @param count The number of episodes
+     * @param seed The seed of the layouts and the exploration
+     * @throws InterruptedException
+     * @throws ExecutionException When some episode fails
+     */
+    public void train(ExecutorService executor, int threads, long count, long seed)
+            throws InterruptedException, ExecutionException {
+        long remaining = count;
+        for (long round = 0; remaining > 0; round++) {
+            List<QTable> copies = new ArrayList<QTable>();
+            List<Future<Long>> tasks = new ArrayList<Future<Long>>();
+            for (int thread = 0; thread < threads && remaining > 0; thread++) {
+                final QTable copy = table.copy();
+                final long block = Math.min(syncInterval, remaining);
+                final long copySeed = seed + round * threads + thread;
+                remaining -= block;
+                copies.add(copy);
+                tasks.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        train(copy, block, copySeed);
+                        return block;
+                    }
+                }));
+            }
+            for (Future<Long> task : tasks) {
+                episodes += task.get();
+            }
+            table.merge(copies);
+        }
+    }
+
+    /**
+     * Trains a table at a new world.
+     * @param table The action values
+     * @param count The number of episodes
+     * @param seed The seed of the layouts and the exploration
+     * @throws InterruptedException
+     */
+    private void train(QTable table, long count, long seed) throws InterruptedException {
+        World world = new World(width, height);
+        if (pits > 0) world.setPits(pits);
+        world.setSeed(seed);
+        Random random = new Random(seed ^ EXPLORATION_SALT);
+        for (long i = 0; i < count; i++) {
+            play(table, world, random);
+        }
+    }
+
+    /**
+     * Plays an episode, updating the value of every action taken.
+     * @param table The action values
+     * @param world The world instance
+     * @param random The exploration random generator
+     * @throws InterruptedException
+     */
+    private void play(QTable table, World world, Random random) throws InterruptedException {
+        world.reset();
+        Player player = world.getPlayer();
+        long state = QLearningAgent.getState(player, width);
+        int slot = table.add(state);
+        int capacity = table.capacity();
+        int score = getScore(player);
+
+        while (world.getStatus() == World.RUNNING) {
+            int action = random.nextDouble() < exploration ?
+                    random.nextInt(ACTIONS.length) : table.getBest(slot);
+            int status = world.step(ACTIONS[action]) & World.STATUS_MASK;
+            int next = getScore(player);
+            float reward = next - score;
+            score = next;
+
+            // The timeout only cuts the episode, the state it reaches still has its value
+            if (status != World.RUNNING && status != World.TIMEOUT) {
+                // The gold is only worth it at the start position
+                if (status == World.WIN) reward += Environment.GOLD_SCORE;
+                table.update(slot, action, reward, rate);
+                break;
+            }
+            long nextState = QLearningAgent.getState(player, width);
+            int nextSlot = table.add(nextState);
+            if (table.capacity() != capacity) {
+                // The table has grown and moved the states
+                slot = table.find(state);
+                capacity = table.capacity();
+            }
+            table.update(slot, action, reward + discount * table.getMax(nextSlot), rate);
+            state = nextState;
+            slot = nextSlot;
+        }
+    }
+
+    /**
+     * Returns the score of a player without the gold, that is only rewarded when brought back.
+     * @param player The player instance
+     * @return The score
+     */
+    private static int getScore(Player player) {
+        return player.hasGold() ? player.getScore() - Environment.GOLD_SCORE : player.getScore();
+    }
+}
@@ -0,0 +1,192 @@
+package agents;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import wumpus.Agent;
+import wumpus.Environment.Action;
+import wumpus.Player;
+
+/**
+ * An Agent that plays the actions with the highest value learned by {@link QLearning} for its
+ * state: the tile, the direction, the perceptions, the arrows left and weather it has the gold.
+ * The table is only read, so a single table can be shared by the agents of every thread. The
+ * states never seen at the training take a random action.
+ * <p>
+ * The state is all the agent knows, so taking the same action at a state it has been before
+ * would repeat the same moves forever. The agent remembers the actions taken at each state of
+ * the game and takes the best one it has not tried there yet, and exits once it has tried them
+ * all. An agent plays a single game, or one after each {@link #reset()}.
+ */
+public class QLearningAgent implements Agent {
+    private static final Action[] ACTIONS = Action.values();
+    private static final int NOOP = Action.NOOP.ordinal();
+    private static final int EXIT = Action.EXIT.ordinal();
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final QTable table;
+    private final Random random;
+    private boolean debug = true;
+
+    // The actions tried at each state of the game, at an open addressing table
+    private long[] states = new long[INITIAL_CAPACITY];
+    private int[] tried = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * The agent constructor.
+     * @param table The learned action values
+     * @param seed The seed of the actions taken at unknown states
+     */
+    public QLearningAgent(QTable table, long seed) {
+        this.table = table;
+        this.random = new Random(seed);
+        reset();
+    }
+
+    /**
+     * Sets weather to show the debug messages or not.
+     * @param value <tt>true</tt> to display messages
+     */
+    public void setDebug(boolean value) {
+        debug = value;
+    }
+
+    /**
+     * Packs the state of a player at a key, the tile linear position above the direction, the
+     * perceptions, the arrows and the gold bits.
+     * @param player The player instance
+     * @param width The board width
+     * @return The state key
+     */
+    public static long getState(Player player, int width) {
+        return getState(player.getY() * width + player.getX(), player.getDirection().ordinal(),
+                player.getPerceptionBits(), player.getArrows(), player.hasGold());
+    }
+
+    /**
+     * Packs the state of a player seen from outside the engine.
+     * @param tile The tile linear position
+     * @param direction The direction ordinal
+     * @param perceptions The perceptions mask
+     * @param arrows The arrows left
+     * @param gold Weather the player has the gold
+     * @return The state key
+     */
+    public static long getState(int tile, int direction, int perceptions, int arrows,
+                                boolean gold) {
+        return (long) tile << 12 | direction << 10 | (perceptions & 0x3F) << 4 |
+                Math.min(arrows, 3) << 1 | (gold ? 1 : 0);
+    }
+
+    /**
+     * Prints the player board and debug message.
+     * @param player The player instance
+     */
+    public void beforeAction(Player player) {
+        if (debug) {
+            System.out.println(player.render());
+            System.out.println(player.debug());
+        }
+    }
+
+    /**
+     * Prints the last action taken.
+     * @param player The player instance
+     */
+    public void afterAction(Player player) {
+        if (debug) System.out.println(player.getLastAction());
+    }
+
+    /**
+     * Takes the action with the highest learned value at the player state, among the ones not
+     * taken at the same state before.
+     * @param player The player instance
+     * @return The next action
+     */
+    public Action getAction(Player player) {
+        return ACTIONS[getAction(getState(player, table.getWidth()))];
+    }
+
+    /**
+     * Takes the action with the highest learned value at a state, among the ones not taken at
+     * the same state of the game before.
+     * @param state The state key
+     * @return The action ordinal
+     */
+    public int getAction(long state) {
+        int visit = visit(state);
+        int slot = table.find(state);
+        int action = -1;
+        if (slot < 0) {
+            action = random.nextInt(ACTIONS.length);
+            if ((tried[visit] & 1 << action) != 0) action = -1;
+        } else {
+            for (int i = 0; i < ACTIONS.length; i++) {
+                // Doing nothing never leaves the state
+                if (i == NOOP || (tried[visit] & 1 << i) != 0) continue;
+                if (action < 0 || table.get(slot, i) > table.get(slot, action)) action = i;
+            }
+        }
+        if (action < 0) action = next(tried[visit]);
+        tried[visit] |= 1 << action;
+        return action;
+    }
+
+    /**
+     * Forgets the actions taken, to play a new game.
+     */
+    public void reset() {
+        Arrays.fill(states, QTable.EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Returns the first action not tried yet, exiting when all of them were.
+     * @param mask The actions tried
+     * @return The action ordinal
+     */
+    private static int next(int mask) {
+        for (int i = 0; i < ACTIONS.length; i++) {
+            if (i != NOOP && (mask & 1 << i) == 0) return i;
+        }
+        return EXIT;
+    }
+
+    /**
+     * Returns the slot of a state at the table of the states of the game, adding it if new.
+     * @param state The state key
+     * @return The slot index
+     */
+    private int visit(long state) {
+        if ((size + 1) * 2 > states.length) grow();
+        int mask = states.length - 1;
+        int slot = (int) (state * 0x9E3779B97F4A7C15L >>> 40) & mask;
+        while (states[slot] != QTable.EMPTY && states[slot] != state) {
+            slot = (slot + 1) & mask;
+        }
+        if (states[slot] == QTable.EMPTY) {
+            states[slot] = state;
+            tried[slot] = 0;
+            size++;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the table of the states of the game.
+     */
+    private void grow() {
+        long[] oldStates = states;
+        int[] oldTried = tried;
+        states = new long[oldStates.length * 2];
+        tried = new int[oldStates.length * 2];
+        Arrays.fill(states, QTable.EMPTY);
+        size = 0;
+        for (int i = 0; i < oldStates.length; i++) {
+            if (oldStates[i] == QTable.EMPTY) continue;
+            int slot = visit(oldStates[i]);
+            tried[slot] = oldTried[i];
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package agents;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The action values learned for each state, an open addressed table of primitive long keys with
+ * the values of every action of a state at a flat float array, so the lookups at the hot path of
+ * the training do not box the keys or allocate. The keys are probed linearly from their home slot
+ * and the table doubles once it is half full.
+ * <p>
+ * Each value keeps the number of updates it had, so the tables trained at parallel from the same
+ * copy can be merged weighting the changes of each one. The counts are not saved, a saved table
+ * is meant to be played only.
+ */
+public class QTable {
+    public static final int ACTIONS = 7;
+    public static final long EMPTY = -1;
+
+    private static final int MAGIC = 0x57515442;
+    private static final int VERSION = 1;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final int width;
+    private final int height;
+    private long[] keys;
+    private float[] values;
+    private int[] counts;
+    private int mask;
+    private int size = 0;
+
+    /**
+     * The table constructor.
+     * @param width The board width of the states
+     * @param height The board height of the states
+     */
+    public QTable(int width, int height) {
+        this(width, height, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * The table constructor.
+     * @param width The board width of the states
+     * @param height The board height of the states
+     * @param capacity The initial number of slots, rounded up to a power of two
+     */
+    public QTable(int width, int height, int capacity) {
+        this.width = width;
+        this.height = height;
+        allocate(Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1);
+    }
+
+    /**
+     * Returns the slot of a state.
+     * @param key The state key, any long but {@link #EMPTY}
+     * @return The slot or -1 when the state is not at the table
+     */
+    public int find(long key) {
+        int index = getHome(key);
+        while (true) {
+            long current = keys[index];
+            if (current == key) return index;
+            if (current == EMPTY) return -1;
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the slot of a state, adding it with zero values if it is not at the table.
+     * @param key The state key, any long but {@link #EMPTY}
+     * @return The slot
+     */
+    public int add(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Reserved key: " + key);
+        }
+        int index = getHome(key);
+        while (true) {
+            long current = keys[index];
+            if (current == key) return index;
+            if (current == EMPTY) break;
+            index = (index + 1) & mask;
+        }
+        if (2 * (size + 1) > keys.length) {
+            grow();
+            return add(key);
+        }
+        keys[index] = key;
+        size++;
+        return index;
+    }
+
+    /**
+     * Returns the value of an action at a slot.
+     * @param slot The state slot
+     * @param action The action ordinal
+     * @return The action value
+     */
+    public float get(int slot, int action) {
+        return values[slot * ACTIONS + action];
+    }
+
+    /**
+     * Moves the value of an action at a slot towards a target.
+     * @param slot The state slot
+     * @param action The action ordinal
+     * @param target The target value
+     * @param rate The learning rate, between 0 and 1
+     */
+    public void update(int slot, int action, float target, float rate) {
+        int index = slot * ACTIONS + action;
+        values[index] += rate * (target - values[index]);
+        counts[index]++;
+    }
+
+    /**
+     * Returns the action with the highest value at a slot, the first one when tied.
+     * @param slot The state slot
+     * @return The action ordinal
+     */
+    public int getBest(int slot) {
+        int offset = slot * ACTIONS;
+        int best = 0;
+        for (int i = 1; i < ACTIONS; i++) {
+            if (values[offset + i] > values[offset + best]) best = i;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the highest action value at a slot.
+     * @param slot The state slot
+     * @return The value
+     */
+    public float getMax(int slot) {
+        return values[slot * ACTIONS + getBest(slot)];
+    }
+
+    /**
+     * Returns the number of states at the table.
+     * @return The states count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots, the slots of the states change when it grows.
+     * @return The capacity
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the board width of the states.
+     * @return The width
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Returns the board height of the states.
+     * @return The height
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Returns a copy of the table, values and counts.
+     * @return The table instance
+     */
+    public QTable copy() {
+        QTable copy = new QTable(width, height, keys.length);
+        System.arraycopy(keys, 0, copy.keys, 0, keys.length);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Merges the tables trained at parallel from copies of this one. Every value becomes the mean
+     * of the values of the copies that updated it, weighted by their number of updates since the
+     * copy, the values no copy updated are kept.
+     * @param copies The trained copies
+     */
+    public void merge(List<QTable> copies) {
+        QTable sums = new QTable(width, height, keys.length);
+        for (QTable copy : copies) {
+            for (int slot = 0; slot < copy.keys.length; slot++) {
+                long key = copy.keys[slot];
+                if (key == EMPTY) continue;
+                int base = find(key);
+                int target = -1;
+                for (int action = 0; action < ACTIONS; action++) {
+                    int index = slot * ACTIONS + action;
+                    int updates = copy.counts[index] -
+                            (base < 0 ? 0 : counts[base * ACTIONS + action]);
+                    if (updates <= 0) continue;
+                    if (target < 0) target = sums.add(key);
+                    sums.values[target * ACTIONS + action] += copy.values[index] * updates;
+                    sums.counts[target * ACTIONS + action] += updates;
+                }
+            }
+        }
+        for (int slot = 0; slot < sums.keys.length; slot++) {
+            long key = sums.keys[slot];
+            if (key == EMPTY) continue;
+            int target = add(key);
+            for (int action = 0; action < ACTIONS; action++) {
+                int index = slot * ACTIONS + action;
+                int updates = sums.counts[index];
+                if (updates == 0) continue;
+                values[target * ACTIONS + action] = sums.values[index] / updates;
+                counts[target * ACTIONS + action] += updates;
+            }
+        }
+    }
+
+    /**
+     * Saves the keys and values of the table, after a header with the board size.
+     * @param file The table file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(width);
+            output.writeInt(height);
+            output.writeInt(size);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == EMPTY) continue;
+                output.writeLong(keys[slot]);
+                for (int action = 0; action < ACTIONS; action++) {
+                    output.writeFloat(values[slot * ACTIONS + action]);
+                }
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Loads a table saved by {@link #write(File)}.
+     * @param file The table file
+     * @return The table instance
+     * @throws IOException When the file is not a table
+     */
+    public static QTable read(File file) throws IOException {
+        DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a Q-table file: " + file);
+            }
+            int width = input.readInt();
+            int height = input.readInt();
+            int size = input.readInt();
+            QTable table = new QTable(width, height, 2 * size);
+            for (int i = 0; i < size; i++) {
+                int slot = table.add(input.readLong());
+                for (int action = 0; action < ACTIONS; action++) {
+                    table.values[slot * ACTIONS + action] = input.readFloat();
+                }
+            }
+            return table;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Doubles the slots, adding the states again.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        float[] oldValues = values;
+        int[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] == EMPTY) continue;
+            int target = add(oldKeys[slot]);
+            System.arraycopy(oldValues, slot * ACTIONS, values, target * ACTIONS, ACTIONS);
+            System.arraycopy(oldCounts, slot * ACTIONS, counts, target * ACTIONS, ACTIONS);
+        }
+    }
+
+    /**
+     * Allocates empty slots.
+     * @param capacity The number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new float[capacity * ACTIONS];
+        counts = new int[capacity * ACTIONS];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /**
+     * Returns the home slot of a key, mixing its bits so the packed fields spread over the table.
+     * @param key The state key
+     * @return The slot
+     */
+    private int getHome(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+}
@@ -11,7 +11,7 @@ import wumpus.Player;
  */
 public class RandomAgent implements Agent {
     public boolean debug = true;
-    public final Random random = new Random();
+    public final Random random;
     public final Action[] actions = {
             Action.GO_FORWARD,
             Action.GO_FORWARD,
@@ -23,6 +23,21 @@ public class RandomAgent implements Agent {
             Action.SHOOT_ARROW
     };
 
+    /**
+     * Creates an agent with a random seed.
+     */
+    public RandomAgent() {
+        random = new Random();
+    }
+
+    /**
+     * Creates an agent that takes a reproducible sequence of actions.
+     * @param seed The random seed
+     */
+    public RandomAgent(long seed) {
+        random = new Random(seed);
+    }
+
     /**
      * Sets weather to show the debug messages or not.
      * @param value <tt>true</tt> to display messages
@@ -0,0 +1,143 @@
+package trials;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import agents.HeuristicAgent;
+import agents.QLearningAgent;
+import agents.QTable;
+import agents.RandomAgent;
+import wumpus.Agent;
+
+/**
+ * Creates the agents by name so they can be instantiated at any process from a plain text
+ * description of the campaign. Custom agents can be registered to be played by the campaigns
+ * of the same process.
+ */
+public class Agents {
+    /**
+     * Creates the agent instances of a kind of agent.
+     */
+    public interface Factory {
+        /**
+         * Creates a new agent instance with the debug messages turned off.
+         * @param width The board width
+         * @param height The board height
+         * @param seed The seed for agents that take random decisions
+         * @return The agent instance
+         */
+        Agent create(int width, int height, long seed);
+    }
+
+    /**
+     * The system property with the file of the learned table, by default the one saved by
+     * {@link Training} for the board size.
+     */
+    public static final String Q_TABLE_PROPERTY = "wumpus.qtable";
+
+    private static final Map<String, Factory> factories = new LinkedHashMap<String, Factory>();
+    private static final Map<String, Boolean> deterministic = new LinkedHashMap<String, Boolean>();
+    private static final Map<String, QTable> tables = new LinkedHashMap<String, QTable>();
+
+    static {
+        register("HeuristicAgent", true, new Factory() {
+            public Agent create(int width, int height, long seed) {
+                HeuristicAgent agent = new HeuristicAgent(width, height);
+                agent.setDebug(false);
+                return agent;
+            }
+        });
+        register("RandomAgent", false, new Factory() {
+            public Agent create(int width, int height, long seed) {
+                RandomAgent agent = new RandomAgent(seed);
+                agent.setDebug(false);
+                return agent;
+            }
+        });
+        register("QLearningAgent", false, new Factory() {
+            public Agent create(int width, int height, long seed) {
+                QLearningAgent agent = new QLearningAgent(getTable(width, height), seed);
+                agent.setDebug(false);
+                return agent;
+            }
+        });
+    }
+
+    /**
+     * Registers a kind of agent.
+     * @param name The agent name
+     * @param isDeterministic Weather the agent always takes the same action for the same
+     *                        history of perceptions
+     * @param factory The agent factory
+     */
+    public static synchronized void register(String name, boolean isDeterministic,
+                                             Factory factory) {
+        factories.put(name, factory);
+        deterministic.put(name, isDeterministic);
+    }
+
+    /**
+     * Creates a new agent instance with the debug messages turned off.
+     * @param name The agent name
+     * @param width The board width
+     * @param height The board height
+     * @param seed The seed for agents that take random decisions
+     * @return The agent instance
+     * @throws IllegalArgumentException When the agent is unknown
+     */
+    public static Agent create(String name, int width, int height, long seed) {
+        return getFactory(name).create(width, height, seed);
+    }
+
+    /**
+     * Returns the factory of a kind of agent.
+     * @param name The agent name
+     * @return The factory instance
+     * @throws IllegalArgumentException When the agent is unknown
+     */
+    public static synchronized Factory getFactory(String name) {
+        Factory factory = factories.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown agent: " + name);
+        }
+        return factory;
+    }
+
+    /**
+     * Returns weather the agent always takes the same action for the same history of
+     * perceptions, so a repeated state means it is in a loop.
+     * @param name The agent name
+     * @return <tt>true</tt> if the agent is deterministic
+     */
+    public static synchronized boolean isDeterministic(String name) {
+        Boolean value = deterministic.get(name);
+        return value != null && value;
+    }
+
+    /**
+     * Returns the learned table of a board size, loaded once and shared by all the agents.
+     * @param width The board width
+     * @param height The board height
+     * @return The table instance
+     * @throws IllegalArgumentException When the table can not be loaded or is of another size
+     */
+    private static synchronized QTable getTable(int width, int height) {
+        String path = System.getProperty(Q_TABLE_PROPERTY, Training.getDefaultFile(width, height));
+        QTable table = tables.get(path);
+        if (table == null) {
+            try {
+                table = QTable.read(new File(path));
+            } catch (IOException error) {
+                throw new IllegalArgumentException("Unable to load the Q-table: " + path, error);
+            }
+            tables.put(path, table);
+        }
+        if (table.getWidth() != width || table.getHeight() != height) {
+            throw new IllegalArgumentException("The Q-table was learned at a " +
+                    table.getWidth() + "x" + table.getHeight() + " board: " + path);
+        }
+        return table;
+    }
+}
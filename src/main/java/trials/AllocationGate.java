@@ -0,0 +1,211 @@
+package trials;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import wumpus.AllocationMeter;
+import wumpus.ArrayBoard;
+import wumpus.AtomicBoard;
+import wumpus.Board;
+import wumpus.BufferBoard;
+import wumpus.Layout;
+import wumpus.Solvability;
+import wumpus.World;
+
+/**
+ * Fails when the engine or an agent allocates more than its budget, so a change that brings
+ * allocations back to the hot path is caught before it slows down the campaigns. Every agent of
+ * the budget file plays a warm-up, so the classes are loaded and compiled, and then the measured
+ * episodes at a single thread, over the heap, the shared and the off-heap boards. The episodes
+ * are measured a few rounds and the least allocating round is checked, so a one-off allocation
+ * of the JVM during a round does not fail the gate while a steady one does. The process exits
+ * with status 1 when a budget is exceeded.
+ * <pre>
+ *     AllocationGate [BUDGET_FILE [WIDTH HEIGHT EPISODES SEED]]
+ *     AllocationGate allocation-budget.properties 8 8 10000 42
+ * </pre>
+ */
+public class AllocationGate {
+    private static final String DEFAULT_BUDGET_FILE = "allocation-budget.properties";
+    private static final String AGENT_PREFIX = "agent.";
+    private static final String STEP_SUFFIX = ".step";
+    private static final int DEFAULT_SIZE = 4;
+    private static final long DEFAULT_EPISODES = 10000;
+    private static final long DEFAULT_SEED = 42;
+    private static final int ROUNDS = 3;
+
+    private final Properties budgets;
+    private final List<String> violations = new ArrayList<String>();
+    private final StringBuilder table = new StringBuilder();
+
+    public static void main(String[] args) throws Exception {
+        File file = new File(args.length > 0 ? args[0] : DEFAULT_BUDGET_FILE);
+        AllocationGate gate = new AllocationGate(read(file));
+        int width = args.length > 4 ? Integer.parseInt(args[1]) : DEFAULT_SIZE;
+        int height = args.length > 4 ? Integer.parseInt(args[2]) : DEFAULT_SIZE;
+        long episodes = args.length > 4 ? Long.parseLong(args[3]) : DEFAULT_EPISODES;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED;
+
+        for (String agent : gate.getAgents()) {
+            Campaign campaign = new Campaign(agent, width, height, episodes, seed);
+            gate.check(campaign, new ArrayBoard(width, height));
+            gate.check(campaign, new AtomicBoard(width, height));
+            gate.check(campaign, new BufferBoard(width, height));
+        }
+        System.out.print(gate.render());
+        if (!gate.getViolations().isEmpty()) {
+            for (String violation : gate.getViolations()) {
+                System.out.println(violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("All the allocation budgets are met.");
+    }
+
+    /**
+     * The gate constructor.
+     * @param budgets The budgets, <tt>reset.episode</tt>, <tt>engine.step</tt> and
+     *                <tt>agent.NAME.step</tt> in bytes
+     */
+    public AllocationGate(Properties budgets) {
+        this.budgets = budgets;
+    }
+
+    /**
+     * Returns the agents with a budget.
+     * @return The agent names
+     */
+    public List<String> getAgents() {
+        List<String> agents = new ArrayList<String>();
+        for (String name : budgets.stringPropertyNames()) {
+            if (name.startsWith(AGENT_PREFIX) && name.endsWith(STEP_SUFFIX)) {
+                agents.add(name.substring(AGENT_PREFIX.length(),
+                        name.length() - STEP_SUFFIX.length()));
+            }
+        }
+        Collections.sort(agents);
+        return agents;
+    }
+
+    /**
+     * Returns the budgets exceeded so far.
+     * @return The violation messages
+     */
+    public List<String> getViolations() {
+        return violations;
+    }
+
+    /**
+     * Plays the episodes of a campaign as a warm-up and then a few measured rounds, and checks
+     * the allocations of the least allocating round against the budgets.
+     * @param campaign The campaign to measure
+     * @return The meter of the last measured round
+     * @throws InterruptedException
+     */
+    public AllocationMeter check(Campaign campaign) throws InterruptedException {
+        return check(campaign, new ArrayBoard(campaign.getWidth(), campaign.getHeight()));
+    }
+
+    /**
+     * Plays the episodes of a campaign over a board storage as a warm-up and then a few
+     * measured rounds, and checks the allocations of the least allocating round against the
+     * budgets.
+     * @param campaign The campaign to measure
+     * @param board The board of the campaign size
+     * @return The meter of the last measured round
+     * @throws InterruptedException
+     */
+    public AllocationMeter check(Campaign campaign, Board board) throws InterruptedException {
+        AllocationMeter meter = new AllocationMeter();
+        World world = campaign.createWorld(board);
+        Solvability classifier = campaign.createClassifier();
+        world.setAllocationMeter(meter);
+        play(campaign, world, classifier);
+
+        double reset = Double.MAX_VALUE;
+        double engine = Double.MAX_VALUE;
+        double agentStep = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            meter.clear();
+            play(campaign, world, classifier);
+            reset = Math.min(reset, meter.getResetPerEpisode());
+            engine = Math.min(engine, meter.getEnginePerStep());
+            agentStep = Math.min(agentStep, meter.getAgentPerStep());
+        }
+
+        String agent = campaign.getAgentName();
+        String label = agent + "/" + board.getClass().getSimpleName();
+        verify(label, "reset.episode", reset);
+        verify(label, "engine.step", engine);
+        verify(label, AGENT_PREFIX + agent + STEP_SUFFIX, agentStep);
+        table.append(String.format("| %-28s | %13.2f | %12.2f | %12.2f |%n", label,
+                reset, engine, agentStep));
+        return meter;
+    }
+
+    /**
+     * Renders the measured allocations as an ASCII table.
+     * @return The allocations table
+     */
+    public String render() {
+        String line = String.format("+----------------------------------------------------------" +
+                "------------------+%n");
+        return line + String.format("| %-28s | %13s | %12s | %12s |%n", "Agent/Board",
+                "Reset/episode", "Engine/step", "Agent/step") +
+                String.format("| %-28s | %13s | %12s | %12s |%n", "----------------------------",
+                "-------------", "------------", "------------") + table + line;
+    }
+
+    /**
+     * Plays all the episodes of a campaign at a world.
+     * @param campaign The campaign
+     * @param world The world created by the campaign
+     * @param classifier The layouts classifier
+     * @throws InterruptedException
+     */
+    private static void play(Campaign campaign, World world, Solvability classifier)
+            throws InterruptedException {
+        for (long episode = 0; episode < campaign.getEpisodes(); episode++) {
+            Layout layout = campaign.generate(world, classifier, episode);
+            world.execute(campaign.createAgent(episode), layout);
+        }
+    }
+
+    /**
+     * Compares a measured allocation with its budget, if it has one.
+     * @param agent The agent and board names
+     * @param name The budget name
+     * @param bytes The measured bytes
+     */
+    private void verify(String agent, String name, double bytes) {
+        String budget = budgets.getProperty(name);
+        if (budget == null) return;
+        if (bytes > Double.parseDouble(budget)) {
+            violations.add(String.format("%s: %s is %.2f bytes, over the budget of %s bytes.",
+                    agent, name, bytes, budget));
+        }
+    }
+
+    /**
+     * Loads the budgets from a properties file.
+     * @param file The budget file
+     * @return The budgets
+     * @throws IOException
+     */
+    private static Properties read(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream input = new FileInputStream(file);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,371 @@
+package trials;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import wumpus.AllocationMeter;
+import wumpus.Layout;
+import wumpus.Player;
+import wumpus.Solvability;
+import wumpus.Solver;
+import wumpus.World;
+
+/**
+ * The end to end throughput suite: fixed seed campaigns of the bundled agents from the smallest
+ * to the largest boards, played at a single thread after a warm-up so the JIT has compiled the
+ * hot path. Every case is measured for a few rounds, each one lasting at least the round time
+ * and a minimum number of episodes so the slow cases are not measured by one or two episodes,
+ * and keeps the median episodes and steps per second, the spread between the rounds and the
+ * bytes allocated per episode.
+ * <p>
+ * The results are saved as baselines at <tt>benchmarks/VERSION.properties</tt>, and a new build is
+ * compared with a saved baseline flagging the cases slower or allocating more than the noise of
+ * both measures allows.
+ * <pre>
+ *     Benchmark run [SECONDS]
+ *     Benchmark save VERSION [SECONDS]
+ *     Benchmark compare VERSION [SECONDS]
+ * </pre>
+ */
+public class Benchmark {
+    private static final String BASELINE_FOLDER = "benchmarks";
+    private static final String[] AGENTS = {"HeuristicAgent", "RandomAgent"};
+    private static final int[] SIZES = {4, 8, 64, 512};
+    private static final long SEED = 42;
+    private static final int ROUNDS = 5;
+    private static final int MIN_ROUND_EPISODES = 30;
+    private static final double DEFAULT_SECONDS = 1;
+    private static final double MIN_THRESHOLD = 0.05;
+    private static final double MAX_THRESHOLD = 0.5;
+    private static final double NOISE_FACTOR = 2;
+    private static final double MIN_BYTES_THRESHOLD = 64;
+
+    /**
+     * A campaign of the suite and its measures.
+     */
+    public static class Case {
+        private final String agentName;
+        private final int size;
+        private double episodesPerSecond;
+        private double stepsPerSecond;
+        private double bytesPerEpisode;
+        private double spread;
+
+        Case(String agentName, int size) {
+            this.agentName = agentName;
+            this.size = size;
+        }
+
+        /**
+         * Returns the case name, used as key at the baselines.
+         * @return The agent and board size
+         */
+        public String getName() {
+            return agentName + "." + size + "x" + size;
+        }
+
+        /**
+         * Returns the median episodes played per second.
+         * @return The throughput
+         */
+        public double getEpisodesPerSecond() { return episodesPerSecond; }
+
+        /**
+         * Returns the median steps played per second.
+         * @return The throughput
+         */
+        public double getStepsPerSecond() { return stepsPerSecond; }
+
+        /**
+         * Returns the bytes allocated per episode, including the layout generation.
+         * @return The allocated bytes
+         */
+        public double getBytesPerEpisode() { return bytesPerEpisode; }
+
+        /**
+         * Returns the relative spread of the episodes per second between the rounds.
+         * @return The spread, the half range over the median
+         */
+        public double getSpread() { return spread; }
+
+        /**
+         * Creates the campaign of this case, with the pit density of the default 4x4 board.
+         * @return The campaign instance
+         */
+        Campaign createCampaign() {
+            Campaign campaign = new Campaign(agentName, size, size, Long.MAX_VALUE, SEED);
+            campaign.setPits(Math.max(2, size * size / 8));
+            return campaign;
+        }
+    }
+
+    private final List<Case> cases = new ArrayList<Case>();
+    private final long roundNanos;
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "run";
+        int secondsArg = mode.equals("run") ? 1 : 2;
+        double seconds = args.length > secondsArg ?
+                Double.parseDouble(args[secondsArg]) : DEFAULT_SECONDS;
+
+        Benchmark benchmark = new Benchmark(seconds);
+        Properties baseline = null;
+        File file = null;
+        if (!mode.equals("run")) {
+            file = new File(BASELINE_FOLDER, args[1] + ".properties");
+            if (mode.equals("compare")) baseline = read(file);
+        }
+
+        benchmark.run();
+        System.out.print(benchmark.render());
+
+        if (mode.equals("save")) {
+            benchmark.write(file, args[1]);
+            System.out.format("Baseline saved at: %s%n", file.getPath());
+        } else if (mode.equals("compare")) {
+            List<String> regressions = benchmark.compare(baseline);
+            for (String regression : regressions) {
+                System.out.println(regression);
+            }
+            if (!regressions.isEmpty()) System.exit(1);
+            System.out.format("No regressions from %s.%n", args[1]);
+        }
+    }
+
+    /**
+     * The benchmark constructor.
+     * @param seconds The duration of each measured round, the warm-up takes twice as long
+     */
+    public Benchmark(double seconds) {
+        roundNanos = (long) (seconds * 1e9);
+        for (String agent : AGENTS) {
+            for (int size : SIZES) {
+                cases.add(new Case(agent, size));
+            }
+        }
+    }
+
+    /**
+     * Returns the cases of the suite.
+     * @return The cases list
+     */
+    public List<Case> getCases() {
+        return cases;
+    }
+
+    /**
+     * Measures all the cases, one after the other.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void run() throws IOException, InterruptedException {
+        AllocationMeter meter = AllocationMeter.isSupported() ? new AllocationMeter() : null;
+        for (Case item : cases) {
+            measure(item, meter);
+        }
+    }
+
+    /**
+     * Compares the cases with a baseline. A case regresses when its throughput is lower than the
+     * baseline by more than twice the spread of both measures, at least 5% and at most 50% so
+     * noisy measures still catch large slowdowns, or when
+     * it allocates more than 5% and 64 bytes per episode above the baseline.
+     * @param baseline The baseline properties
+     * @return The regression messages
+     */
+    public List<String> compare(Properties baseline) {
+        List<String> regressions = new ArrayList<String>();
+        for (Case item : cases) {
+            String name = item.getName();
+            if (baseline.getProperty(name + ".episodesPerSecond") == null) continue;
+            double episodes = getDouble(baseline, name + ".episodesPerSecond");
+            double spread = getDouble(baseline, name + ".spread");
+            double bytes = getDouble(baseline, name + ".bytesPerEpisode");
+
+            double threshold = Math.min(MAX_THRESHOLD,
+                    Math.max(MIN_THRESHOLD, NOISE_FACTOR * (spread + item.spread)));
+            double change = item.episodesPerSecond / episodes - 1;
+            if (change < -threshold) {
+                regressions.add(String.format("%s: %.0f episodes/s, %.1f%% slower than the " +
+                        "baseline, over the %.1f%% noise threshold.", name,
+                        item.episodesPerSecond, -change * 100, threshold * 100));
+            }
+            double bytesThreshold = Math.max(MIN_BYTES_THRESHOLD, bytes * MIN_THRESHOLD);
+            if (item.bytesPerEpisode > bytes + bytesThreshold) {
+                regressions.add(String.format("%s: %.0f bytes/episode, %.0f bytes over the " +
+                        "baseline.", name, item.bytesPerEpisode, item.bytesPerEpisode - bytes));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Saves the measures as a baseline, along with the machine they were taken at.
+     * @param file The baseline file
+     * @param version The version of the measured build
+     * @throws IOException
+     */
+    public void write(File file, String version) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("version", version);
+        properties.setProperty("java.version", System.getProperty("java.version"));
+        properties.setProperty("os.arch", System.getProperty("os.arch"));
+        properties.setProperty("processors",
+                Integer.toString(Runtime.getRuntime().availableProcessors()));
+        for (Case item : cases) {
+            String name = item.getName();
+            properties.setProperty(name + ".episodesPerSecond",
+                    String.format("%.1f", item.episodesPerSecond));
+            properties.setProperty(name + ".stepsPerSecond",
+                    String.format("%.1f", item.stepsPerSecond));
+            properties.setProperty(name + ".bytesPerEpisode",
+                    String.format("%.1f", item.bytesPerEpisode));
+            properties.setProperty(name + ".spread", String.format("%.4f", item.spread));
+        }
+        File folder = file.getParentFile();
+        if (folder != null && !folder.exists()) folder.mkdirs();
+        OutputStream output = new FileOutputStream(file);
+        try {
+            properties.store(output, "End to end benchmark baseline");
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Renders the measures as an ASCII table.
+     * @return The measures table
+     */
+    public String render() {
+        StringBuilder table = new StringBuilder();
+        String line = "+------------------------------------------------------------------------" +
+                "----------+%n";
+        table.append(String.format(line));
+        table.append(String.format("| %-24s | %12s | %12s | %12s | %8s |%n", "Case",
+                "Episodes/s", "Steps/s", "Bytes/ep", "Spread"));
+        table.append(String.format("| %-24s | %12s | %12s | %12s | %8s |%n",
+                "------------------------", "------------", "------------", "------------",
+                "--------"));
+        for (Case item : cases) {
+            table.append(String.format("| %-24s | %12.1f | %12.0f | %12.0f | %7.2f%% |%n",
+                    item.getName(), item.episodesPerSecond, item.stepsPerSecond,
+                    item.bytesPerEpisode, item.spread * 100));
+        }
+        table.append(String.format(line));
+        return table.toString();
+    }
+
+    /**
+     * Warms up a case and measures its rounds.
+     * @param item The case
+     * @param meter The allocation meter of this thread or <tt>null</tt> if not supported
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void measure(Case item, AllocationMeter meter) throws IOException,
+            InterruptedException {
+        Campaign campaign = item.createCampaign();
+        World world = campaign.createWorld();
+        Solvability classifier = campaign.createClassifier();
+        Solver solver = campaign.isRegret() ? campaign.createSolver() : null;
+
+        long episode = 0;
+        long warmUp = System.nanoTime() + 2 * roundNanos;
+        Statistics ignored = new Statistics();
+        while (System.nanoTime() < warmUp) {
+            play(campaign, world, classifier, solver, episode++, ignored);
+        }
+
+        double[] episodes = new double[ROUNDS];
+        double[] steps = new double[ROUNDS];
+        long played = 0;
+        long bytes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            Statistics statistics = new Statistics();
+            long allocated = meter != null ? meter.now() : 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                play(campaign, world, classifier, solver, episode++, statistics);
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < roundNanos || statistics.getEpisodes() < MIN_ROUND_EPISODES);
+            if (meter != null) bytes += meter.now() - allocated;
+            played += statistics.getEpisodes();
+            episodes[round] = statistics.getEpisodes() * 1e9 / elapsed;
+            steps[round] = statistics.getSteps() * 1e9 / elapsed;
+        }
+        item.episodesPerSecond = getMedian(episodes);
+        item.stepsPerSecond = getMedian(steps);
+        item.bytesPerEpisode = (double) bytes / played;
+        Arrays.sort(episodes);
+        item.spread = (episodes[ROUNDS - 1] - episodes[0]) / 2 / item.episodesPerSecond;
+    }
+
+    /**
+     * Plays an episode end to end as the campaigns do, from the layout generation to the agent
+     * game, reusing the world, classifier and solver of the case.
+     * @param campaign The campaign of the case
+     * @param world The world created by the campaign
+     * @param classifier The layouts classifier
+     * @param solver The optimal solver or <tt>null</tt> when the regret is not found
+     * @param episode The episode index
+     * @param statistics The statistics to add the episode to
+     * @throws InterruptedException
+     */
+    private static void play(Campaign campaign, World world, Solvability classifier,
+                             Solver solver, long episode, Statistics statistics)
+            throws InterruptedException {
+        Layout layout = campaign.generate(world, classifier, episode);
+        campaign.solve(world, solver, classifier, layout);
+        world.execute(campaign.createAgent(episode), layout);
+        Player player = world.getPlayer();
+        statistics.add(world.getResult(), player.getScore(), player.getActions().size());
+    }
+
+    /**
+     * Returns the median of the values.
+     * @param values The values, sorted by this method
+     * @return The median
+     */
+    private static double getMedian(double[] values) {
+        Arrays.sort(values);
+        int middle = values.length / 2;
+        return values.length % 2 == 1 ? values[middle] :
+                (values[middle - 1] + values[middle]) / 2;
+    }
+
+    /**
+     * Returns a number of a baseline.
+     * @param properties The baseline
+     * @param name The property name
+     * @return The value, zero if missing
+     */
+    private static double getDouble(Properties properties, String name) {
+        return Double.parseDouble(properties.getProperty(name, "0"));
+    }
+
+    /**
+     * Loads a baseline.
+     * @param file The baseline file
+     * @return The baseline properties
+     * @throws IOException
+     */
+    private static Properties read(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream input = new FileInputStream(file);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        return properties;
+    }
+}
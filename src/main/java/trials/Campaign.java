@@ -0,0 +1,681 @@
+package trials;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import agents.HeuristicAgent;
+import wumpus.Agent;
+import wumpus.AllocationMeter;
+import wumpus.ArrayBoard;
+import wumpus.Board;
+import wumpus.BudgetedAgent;
+import wumpus.Environment.Action;
+import wumpus.Environment.Result;
+import wumpus.Layout;
+import wumpus.Player;
+import wumpus.Solvability;
+import wumpus.Solvability.Label;
+import wumpus.Solver;
+import wumpus.Spectator;
+import wumpus.TranspositionTable;
+import wumpus.World;
+
+/**
+ * A campaign is a reproducible sequence of episodes of an agent. Every episode derives its world
+ * layout and agent seed from the campaign seed and its own index, so any range of episodes can be
+ * played at any process and still give the same results.
+ */
+public class Campaign {
+    public static final String REPORT_HEADER =
+            "Episode,Result,Score,Steps,Solvability,Distance,Regret\n";
+    private static final String ALLOCATIONS_COLUMNS =
+            ",ResetBytes,EngineBytesPerStep,AgentBytesPerStep";
+    private static final String BUDGET_COLUMNS = ",Violations";
+
+    private static final long AGENT_SALT = 0x5DEECE66DL;
+    private static final long SAMPLE_SALT = 0x2545F4914F6CDD1DL;
+    private static final int MAX_ATTEMPTS = 1000;
+    private static final int ISOLATION_THREADS_PER_CORE = 2;
+    private static final long ISOLATION_KEEP_ALIVE = 60;
+
+    private final String agentName;
+    private final int width;
+    private final int height;
+    private final long episodes;
+    private final long seed;
+
+    private int stallWindow = 0;
+    private boolean cycleDetection = false;
+    private int pits = 2;
+    private int wumpus = 1;
+    private final double[] sampling = {1, 1, 1};
+    private TranspositionTable table;
+    private Spectator spectator;
+    private boolean allocations = false;
+    private boolean regret = false;
+    private AllocationMeter meter;
+    private long deadline = 0;
+    private long cpuBudget = 0;
+    private String fallback = Action.NOOP.toString();
+    private ExecutorService isolation;
+
+    /**
+     * The campaign constructor.
+     * @param agentName The agent name, as known by {@link Agents}
+     * @param width The board width
+     * @param height The board height
+     * @param episodes The number of episodes
+     * @param seed The campaign seed
+     */
+    public Campaign(String agentName, int width, int height, long episodes, long seed) {
+        this.agentName = agentName;
+        this.width = width;
+        this.height = height;
+        this.episodes = episodes;
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the agent name.
+     * @return The agent name
+     */
+    public String getAgentName() { return agentName; }
+
+    /**
+     * Returns the board width.
+     * @return The width
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Returns the board height.
+     * @return The height
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Returns the number of episodes of the whole campaign.
+     * @return The episodes count
+     */
+    public long getEpisodes() { return episodes; }
+
+    /**
+     * Returns the campaign seed.
+     * @return The seed
+     */
+    public long getSeed() { return seed; }
+
+    /**
+     * Sets the number of steps without perceiving anything new to stop an episode as stalled.
+     * @param value The number of steps, zero to never stop
+     */
+    public void setStallWindow(int value) {
+        stallWindow = value;
+    }
+
+    /**
+     * Sets weather to stop the episodes of deterministic agents as stalled when they repeat a
+     * state without perceiving anything new.
+     * @param value <tt>true</tt> to stop the cycles
+     */
+    public void setCycleDetection(boolean value) {
+        cycleDetection = value;
+    }
+
+    /**
+     * Sets the number of pits on the board of every episode.
+     * @param value The pits count
+     */
+    public void setPits(int value) {
+        pits = value;
+    }
+
+    /**
+     * Returns the number of pits on the board of every episode.
+     * @return The pits count
+     */
+    public int getPits() { return pits; }
+
+    /**
+     * Sets the number of Wumpus on the board of every episode.
+     * @param value The Wumpus count
+     */
+    public void setWumpus(int value) {
+        wumpus = value;
+    }
+
+    /**
+     * Returns the number of Wumpus on the board of every episode.
+     * @return The Wumpus count
+     */
+    public int getWumpus() { return wumpus; }
+
+    /**
+     * Sets the relative frequency of each class of layouts, a class with weight zero is never
+     * played and a class with twice the weight of the others is played twice as often as it is
+     * generated.
+     * @param label The class of layouts
+     * @param weight The class weight
+     */
+    public void setSampling(Label label, double weight) {
+        sampling[label.ordinal()] = weight;
+    }
+
+    /**
+     * Returns the relative frequency of a class of layouts.
+     * @param label The class of layouts
+     * @return The class weight
+     */
+    public double getSampling(Label label) { return sampling[label.ordinal()]; }
+
+    /**
+     * Sets the size of the table of decisions shared by the agents of all the episodes, only
+     * used by the agents that support it.
+     * @param value The maximum number of decisions, zero to not share them
+     */
+    public void setTableSize(int value) {
+        table = value > 0 ? new TranspositionTable(value) : null;
+    }
+
+    /**
+     * Returns the table of decisions shared by the agents of all the episodes.
+     * @return The table or <tt>null</tt> if the decisions are not shared
+     */
+    public TranspositionTable getTable() { return table; }
+
+    /**
+     * Sets the spectator that shows the games of the first world created for the campaign.
+     * @param value The spectator or <tt>null</tt> to not show the games
+     */
+    public void setSpectator(Spectator value) {
+        spectator = value;
+    }
+
+    /**
+     * Sets weather to measure the bytes allocated by the engine and the agent at every episode,
+     * which adds their columns to the report.
+     * @param value <tt>true</tt> to measure the allocations
+     */
+    public void setAllocations(boolean value) {
+        allocations = value;
+    }
+
+    /**
+     * Returns weather the allocations are measured.
+     * @return <tt>true</tt> if measured
+     */
+    public boolean isAllocations() { return allocations; }
+
+    /**
+     * Sets weather to find the best score of every layout with the {@link Solver}, to fill the
+     * regret column of the report. The search costs far more than playing the episode at large
+     * boards, and usually gives up there.
+     * @param value <tt>true</tt> to find the regret
+     */
+    public void setRegret(boolean value) {
+        regret = value;
+    }
+
+    /**
+     * Returns weather the regret of the episodes is found.
+     * @return <tt>true</tt> if found
+     */
+    public boolean isRegret() { return regret; }
+
+    /**
+     * Returns the allocations measured by all the ranges played so far.
+     * @return The merged meter or <tt>null</tt> if the allocations are not measured
+     */
+    public synchronized AllocationMeter getAllocations() { return meter; }
+
+    /**
+     * Returns the header of the report, with the allocation columns if they are measured.
+     * @return The header line
+     */
+    public String getReportHeader() {
+        if (!allocations && !isBudgeted()) return REPORT_HEADER;
+        StringBuilder header = new StringBuilder(REPORT_HEADER);
+        header.setLength(header.length() - 1);
+        if (allocations) header.append(ALLOCATIONS_COLUMNS);
+        if (isBudgeted()) header.append(BUDGET_COLUMNS);
+        return header.append('\n').toString();
+    }
+
+    /**
+     * Sets the time limit of every agent decision, the decisions that take longer are replaced
+     * by the fallback.
+     * @param value The limit in microseconds, zero for no limit
+     */
+    public void setDeadline(long value) {
+        deadline = TimeUnit.MICROSECONDS.toNanos(value);
+    }
+
+    /**
+     * Sets the CPU time the agent can spend at each episode, the fallback plays the rest of the
+     * episode once it is spent.
+     * @param value The budget in milliseconds, zero for no limit
+     */
+    public void setCpuBudget(long value) {
+        cpuBudget = TimeUnit.MILLISECONDS.toNanos(value);
+    }
+
+    /**
+     * Sets what plays instead of the agent when it is out of its time limits.
+     * @param value An action name, such as <tt>NOOP</tt>, or an agent name
+     */
+    public void setFallback(String value) {
+        fallback = value;
+    }
+
+    /**
+     * Sets weather the agents decide at threads apart, so a stuck agent can be abandoned at its
+     * deadline instead of holding the campaign thread. Each decision costs a thread hop, only
+     * worth it for slow agents. The threads are bounded, an abandoned agent that never returns
+     * keeps its thread and once all of them are stuck the decisions wait for a thread until
+     * their deadline.
+     * @param value <tt>true</tt> to isolate the agents
+     */
+    public synchronized void setIsolation(boolean value) {
+        if (!value) {
+            if (isolation != null) isolation.shutdown();
+            isolation = null;
+        } else if (isolation == null) {
+            int threads = Runtime.getRuntime().availableProcessors() * ISOLATION_THREADS_PER_CORE;
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                    ISOLATION_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable task) {
+                            Thread thread = new Thread(task, "agent-isolation");
+                            // A stuck agent must not keep the process alive
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            isolation = executor;
+        }
+    }
+
+    /**
+     * Returns weather the agents play within time limits.
+     * @return <tt>true</tt> if there is a deadline or a CPU budget
+     */
+    public boolean isBudgeted() {
+        return deadline > 0 || cpuBudget > 0;
+    }
+
+    /**
+     * Returns the seed of a single episode, mixing the campaign seed and the episode index with
+     * the SplitMix64 finalizer so neighbour episodes have unrelated layouts.
+     * @param seed The campaign seed
+     * @param episode The episode index
+     * @return The episode seed
+     */
+    public static long getEpisodeSeed(long seed, long episode) {
+        long z = seed + (episode + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Plays the episodes in the range and writes one report line for each one.
+     * @param from The first episode, inclusive
+     * @param to The last episode, exclusive
+     * @param report The report writer or <tt>null</tt> to only aggregate the statistics
+     * @return The statistics of the range
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public Statistics run(long from, long to, Writer report) throws IOException,
+            InterruptedException {
+        Statistics statistics = new Statistics();
+        World world = createWorld();
+        watch(world);
+        Player player = world.getPlayer();
+        Solvability classifier = createClassifier();
+        Solver solver = regret ? createSolver() : null;
+        AllocationMeter local = allocations ? new AllocationMeter() : null;
+        world.setAllocationMeter(local);
+
+        for (long episode = from; episode < to; episode++) {
+            Layout layout = generate(world, classifier, episode);
+            int optimal = solve(world, solver, classifier, layout);
+            Agent agent = createAgent(episode);
+            world.execute(agent, layout);
+
+            Result result = world.getResult();
+            int score = player.getScore();
+            int steps = player.getActions().size();
+            statistics.add(result, score, steps);
+            if (spectator != null) spectator.count(score);
+            if (report != null) {
+                appendColumns(report, episode, result, score, steps, classifier.getLabel(),
+                        classifier.getDistance(), optimal);
+                if (local != null) {
+                    appendAllocations(report, steps, local.getReset(), local.getEngine(),
+                            local.getAgent());
+                }
+                if (isBudgeted()) appendViolations(report, getViolations(agent));
+                report.append('\n');
+            }
+        }
+        if (local != null) {
+            synchronized (this) {
+                if (meter == null) meter = local;
+                else meter.merge(local);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Creates a world with the campaign settings.
+     * @return The world instance
+     * @throws InterruptedException
+     */
+    public World createWorld() throws InterruptedException {
+        return createWorld(new ArrayBoard(width, height));
+    }
+
+    /**
+     * Creates a world with the campaign settings over a board storage.
+     * @param board The board of the campaign size
+     * @return The world instance
+     */
+    public World createWorld(Board board) {
+        World world = new World(board);
+        world.setPits(pits);
+        world.setWumpus(wumpus);
+        world.setStallWindow(stallWindow);
+        world.setCycleDetection(cycleDetection && Agents.isDeterministic(agentName));
+        return world;
+    }
+
+    /**
+     * Attaches the campaign spectator to a world that plays the episodes, if no other world has
+     * claimed it yet. Only a single world is watched, the others are not slowed down.
+     * @param world The world instance
+     */
+    public void watch(World world) {
+        if (spectator != null && spectator.claim()) world.setSpectator(spectator);
+    }
+
+    /**
+     * Returns the spectator that shows the games of the campaign.
+     * @return The spectator or <tt>null</tt> if the games are not shown
+     */
+    public Spectator getSpectator() { return spectator; }
+
+    /**
+     * Creates a layouts classifier for the campaign board size.
+     * @return The classifier instance
+     */
+    public Solvability createClassifier() {
+        return new Solvability(width, height);
+    }
+
+    /**
+     * Creates an optimal solver for the campaign board size.
+     * @return The solver instance
+     */
+    public Solver createSolver() {
+        return new Solver(width, height);
+    }
+
+    /**
+     * Returns the best score of a layout, as seen by a player with the whole board in sight.
+     * @param world A world created by this campaign
+     * @param solver The solver, <tt>null</tt> when the regret is not found
+     * @param classifier The classifier that has classified the layout
+     * @param layout The layout instance
+     * @return The best score or {@link Solver#UNKNOWN} when the regret is not found or the
+     * layout is too large to solve
+     */
+    public int solve(World world, Solver solver, Solvability classifier, Layout layout) {
+        if (!regret) return Solver.UNKNOWN;
+        // The gold is out of reach, the best is to exit at once
+        if (classifier.getLabel() == Label.UNSOLVABLE) return 0;
+        return solver.solve(layout, world.getStartPosition(), world.getPlayer().getArrows());
+    }
+
+    /**
+     * Creates the agent of an episode.
+     * @param episode The episode index
+     * @return The agent instance
+     */
+    public Agent createAgent(long episode) {
+        long agentSeed = getEpisodeSeed(seed, episode) ^ AGENT_SALT;
+        Agent agent = Agents.create(agentName, width, height, agentSeed);
+        if (table != null && agent instanceof HeuristicAgent) {
+            ((HeuristicAgent) agent).setTranspositionTable(table);
+        }
+        if (!isBudgeted()) return agent;
+
+        BudgetedAgent budgeted = new BudgetedAgent(agent, deadline, cpuBudget);
+        Action action = getAction(fallback);
+        if (action != null) {
+            budgeted.setFallback(action);
+        } else {
+            budgeted.setFallback(Agents.create(fallback, width, height, agentSeed));
+        }
+        synchronized (this) {
+            budgeted.setExecutor(isolation);
+        }
+        return budgeted;
+    }
+
+    /**
+     * Returns the number of decisions of an agent replaced by the fallback.
+     * @param agent An agent created by this campaign
+     * @return The violations count
+     */
+    public static int getViolations(Agent agent) {
+        return agent instanceof BudgetedAgent ? ((BudgetedAgent) agent).getViolations() : 0;
+    }
+
+    /**
+     * Returns the action of a name.
+     * @param name The action name
+     * @return The action or <tt>null</tt> if it is not an action
+     */
+    private static Action getAction(String name) {
+        for (Action action : Action.values()) {
+            if (action.toString().equals(name)) return action;
+        }
+        return null;
+    }
+
+    /**
+     * Builds the board layout of an episode and classifies it. Layouts are drawn again from the
+     * episode seed until one is accepted by the sampling weight of its class, so the first one
+     * is always played when all the classes have the same weight.
+     * @param world A world created by this campaign
+     * @param classifier The classifier to keep the layout class
+     * @param episode The episode index
+     * @return The layout instance
+     * @throws InterruptedException When no layout is accepted after many attempts
+     */
+    public Layout generate(World world, Solvability classifier, long episode)
+            throws InterruptedException {
+        double maxWeight = Math.max(sampling[0], Math.max(sampling[1], sampling[2]));
+        long episodeSeed = getEpisodeSeed(seed, episode);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            world.setSeed(attempt == 0 ? episodeSeed : getEpisodeSeed(episodeSeed, attempt));
+            world.reset();
+            Layout layout = world.getLayout();
+            Label label = classifier.classify(layout, world.getStartPosition(),
+                    world.getPlayer().getArrows());
+            // Accept the layout with a probability relative to its class weight
+            double weight = sampling[label.ordinal()];
+            if (weight >= maxWeight) return layout;
+            long draw = getEpisodeSeed(episodeSeed ^ SAMPLE_SALT, attempt) >>> 11;
+            if (draw * 0x1.0p-53 * maxWeight < weight) return layout;
+        }
+        throw new InterruptedException("Cannot generate a layout of the sampled classes after " +
+                "many attempts, increase their weights.");
+    }
+
+    /**
+     * Writes the report line of an episode.
+     * @param report The report writer
+     * @param episode The episode index
+     * @param result The episode result
+     * @param score The final score
+     * @param steps The number of steps taken
+     * @param label The layout class
+     * @param distance The shortest safe path to the gold
+     * @param optimal The best score, the regret column is left empty when it is unknown
+     * @throws IOException
+     */
+    public static void appendRow(Writer report, long episode, Result result, int score, int steps,
+                                 Label label, int distance, int optimal) throws IOException {
+        appendColumns(report, episode, result, score, steps, label, distance, optimal);
+        report.append('\n');
+    }
+
+    /**
+     * Writes the columns every report line has, without ending the line. The optional columns
+     * are appended next, in the order of the header.
+     * @param report The report writer
+     * @param episode The episode index
+     * @param result The episode result
+     * @param score The final score
+     * @param steps The number of steps taken
+     * @param label The layout class
+     * @param distance The shortest safe path to the gold
+     * @param optimal The best score, the regret column is left empty when it is unknown
+     * @throws IOException
+     */
+    public static void appendColumns(Writer report, long episode, Result result, int score,
+                                     int steps, Label label, int distance, int optimal)
+            throws IOException {
+        report.append(Long.toString(episode)).append(',').append(result.toString())
+                .append(',').append(Integer.toString(score)).append(',')
+                .append(Integer.toString(steps)).append(',').append(label.toString())
+                .append(',').append(Integer.toString(distance)).append(',');
+        if (optimal != Solver.UNKNOWN) report.append(Integer.toString(optimal - score));
+    }
+
+    /**
+     * Writes the allocation columns of an episode.
+     * @param report The report writer
+     * @param steps The number of steps taken
+     * @param resetBytes The bytes allocated by the board reset
+     * @param engineBytes The bytes allocated by the engine at all the steps
+     * @param agentBytes The bytes allocated by the agent at all the steps
+     * @throws IOException
+     */
+    public static void appendAllocations(Writer report, int steps, long resetBytes,
+                                         long engineBytes, long agentBytes) throws IOException {
+        int divisor = Math.max(1, steps);
+        report.append(',').append(Long.toString(resetBytes)).append(',')
+                .append(String.format("%.1f", (double) engineBytes / divisor)).append(',')
+                .append(String.format("%.1f", (double) agentBytes / divisor));
+    }
+
+    /**
+     * Writes the time limits column of an episode.
+     * @param report The report writer
+     * @param violations The number of decisions replaced by the fallback
+     * @throws IOException
+     */
+    public static void appendViolations(Writer report, int violations) throws IOException {
+        report.append(',').append(Integer.toString(violations));
+    }
+
+    /**
+     * Returns the command line arguments that describe this campaign.
+     * @return The arguments list
+     */
+    public List<String> toArguments() {
+        List<String> arguments = new ArrayList<String>();
+        arguments.add(agentName);
+        arguments.add(Integer.toString(width));
+        arguments.add(Integer.toString(height));
+        arguments.add(Long.toString(episodes));
+        arguments.add(Long.toString(seed));
+        // Options
+        arguments.add("stall=" + stallWindow);
+        arguments.add("cycles=" + cycleDetection);
+        arguments.add("pits=" + pits);
+        arguments.add("wumpus=" + wumpus);
+        arguments.add("table=" + (table != null ? table.capacity() : 0));
+        arguments.add("sample=" + sampling[0] + ":" + sampling[1] + ":" + sampling[2]);
+        arguments.add("allocations=" + allocations);
+        arguments.add("regret=" + regret);
+        arguments.add("deadline=" + TimeUnit.NANOSECONDS.toMicros(deadline));
+        arguments.add("cpu=" + TimeUnit.NANOSECONDS.toMillis(cpuBudget));
+        arguments.add("fallback=" + fallback);
+        synchronized (this) {
+            arguments.add("isolate=" + (isolation != null));
+        }
+        return arguments;
+    }
+
+    /**
+     * Creates a campaign from its command line arguments, the agent, board size, episodes and
+     * seed followed by any number of <tt>option=value</tt> arguments.
+     * @param args The arguments array
+     * @param offset The position of the first campaign argument
+     * @return The campaign instance
+     */
+    public static Campaign fromArguments(String[] args, int offset) {
+        Campaign campaign = new Campaign(args[offset], Integer.parseInt(args[offset + 1]),
+                Integer.parseInt(args[offset + 2]), Long.parseLong(args[offset + 3]),
+                Long.parseLong(args[offset + 4]));
+        for (int i = offset + 5; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid campaign option: " + args[i]);
+            }
+            campaign.setOption(args[i].substring(0, separator), args[i].substring(separator + 1));
+        }
+        return campaign;
+    }
+
+    /**
+     * Sets a campaign option from its text representation.
+     * @param name The option name
+     * @param value The option value
+     */
+    private void setOption(String name, String value) {
+        if (name.equals("stall")) {
+            setStallWindow(Integer.parseInt(value));
+        } else if (name.equals("cycles")) {
+            setCycleDetection(Boolean.parseBoolean(value));
+        } else if (name.equals("pits")) {
+            setPits(Integer.parseInt(value));
+        } else if (name.equals("wumpus")) {
+            setWumpus(Integer.parseInt(value));
+        } else if (name.equals("table")) {
+            setTableSize(Integer.parseInt(value));
+        } else if (name.equals("deadline")) {
+            setDeadline(Long.parseLong(value));
+        } else if (name.equals("cpu")) {
+            setCpuBudget(Long.parseLong(value));
+        } else if (name.equals("fallback")) {
+            setFallback(value);
+        } else if (name.equals("isolate")) {
+            setIsolation(Boolean.parseBoolean(value));
+        } else if (name.equals("allocations")) {
+            setAllocations(Boolean.parseBoolean(value));
+        } else if (name.equals("regret")) {
+            setRegret(Boolean.parseBoolean(value));
+        } else if (name.equals("sample")) {
+            String[] weights = value.split(":");
+            for (Label label : Label.values()) {
+                setSampling(label, Double.parseDouble(weights[label.ordinal()]));
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown campaign option: " + name);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package trials;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import wumpus.Environment.Result;
+import wumpus.Layout;
+import wumpus.Solvability;
+import wumpus.World;
+
+/**
+ * Compares agents by playing all of them at the exact same episodes: every layout is built once
+ * and played by each agent, and the agents that draw random numbers get the same seed at the
+ * same episode. The differences to the first agent, the baseline, are measured episode by
+ * episode, so the layouts that are hard or easy for every agent cancel out and the confidence
+ * intervals are much narrower than the ones of independent campaigns with the same episodes.
+ * <p>
+ * The variance reduction is how many times more episodes two independent campaigns would need to
+ * reach the same interval of the score difference.
+ * <pre>
+ *     Comparison AGENTS WIDTH HEIGHT EPISODES SEED [OPTION=VALUE...]
+ *     Comparison HeuristicAgent,RandomAgent 4 4 10000 42
+ * </pre>
+ */
+public class Comparison {
+    private static final String DEFAULT_REPORT_FOLDER = "./target/trial-reports";
+    private static final String REPORT_HEADER =
+            "Agent,Baseline,Episodes,WinRate,MeanScore,WinDifference,WinLow,WinHigh," +
+            "ScoreDifference,ScoreLow,ScoreHigh,VarianceReduction\n";
+    private static final int DEFAULT_BLOCK = 1000;
+    private static final double Z_95 = 1.959964;
+
+    /**
+     * The paired differences of an agent to the baseline, kept as integer sums so the blocks can
+     * be merged in any order.
+     */
+    public static class Difference {
+        private long episodes = 0;
+        private long scoreSum = 0;
+        private long scoreSquares = 0;
+        private long winSum = 0;
+        private long winSquares = 0;
+
+        /**
+         * Adds the difference at a single episode.
+         * @param score The agent score minus the baseline score
+         * @param win The agent win minus the baseline win, between -1 and 1
+         */
+        void add(int score, int win) {
+            episodes++;
+            scoreSum += score;
+            scoreSquares += (long) score * score;
+            winSum += win;
+            winSquares += win * win;
+        }
+
+        /**
+         * Adds all the episodes of another difference into this one.
+         * @param other The difference to merge
+         */
+        void merge(Difference other) {
+            episodes += other.episodes;
+            scoreSum += other.scoreSum;
+            scoreSquares += other.scoreSquares;
+            winSum += other.winSum;
+            winSquares += other.winSquares;
+        }
+
+        /**
+         * Returns the mean score difference.
+         * @return The difference
+         */
+        public double getScore() {
+            return episodes == 0 ? 0 : (double) scoreSum / episodes;
+        }
+
+        /**
+         * Returns the half width of the 95% confidence interval of the score difference.
+         * @return The margin of error
+         */
+        public double getScoreMargin() {
+            return Z_95 * getError(scoreSum, scoreSquares, episodes);
+        }
+
+        /**
+         * Returns the win rate difference.
+         * @return The difference between -1 and 1
+         */
+        public double getWin() {
+            return episodes == 0 ? 0 : (double) winSum / episodes;
+        }
+
+        /**
+         * Returns the half width of the 95% confidence interval of the win rate difference.
+         * @return The margin of error
+         */
+        public double getWinMargin() {
+            return Z_95 * getError(winSum, winSquares, episodes);
+        }
+
+        /**
+         * Returns the variance of the score difference.
+         * @return The sample variance
+         */
+        double getScoreVariance() {
+            double error = getError(scoreSum, scoreSquares, episodes);
+            return error * error * episodes;
+        }
+
+        /**
+         * Returns the standard error of a mean from its sums.
+         * @param sum The sum of the values
+         * @param squares The sum of the squared values
+         * @param count The number of values
+         * @return The standard error
+         */
+        private static double getError(long sum, long squares, long count) {
+            if (count < 2) return 0;
+            double mean = (double) sum / count;
+            double variance = Math.max(0, (squares - mean * sum) / (count - 1));
+            return Math.sqrt(variance / count);
+        }
+    }
+
+    private final List<Campaign> campaigns = new ArrayList<Campaign>();
+    private final List<Statistics> statistics = new ArrayList<Statistics>();
+    private final List<Difference> differences = new ArrayList<Difference>();
+    private int block = DEFAULT_BLOCK;
+
+    public static void main(String[] args) throws Exception {
+        Comparison comparison = new Comparison();
+        for (String agent : args[0].split(",")) {
+            String[] campaignArgs = args.clone();
+            campaignArgs[0] = agent;
+            comparison.add(Campaign.fromArguments(campaignArgs, 0));
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        long executionTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            comparison.run(executor);
+        } finally {
+            executor.shutdown();
+        }
+        executionTime = System.currentTimeMillis() - executionTime;
+
+        File folder = new File(DEFAULT_REPORT_FOLDER);
+        if (!folder.exists()) folder.mkdirs();
+        File report = new File(folder, "comparison.csv");
+        Writer writer = new BufferedWriter(new FileWriter(report));
+        try {
+            comparison.write(writer);
+        } finally {
+            writer.close();
+        }
+        System.out.println(comparison.render());
+        System.out.format("Finished in %dms.%n", executionTime);
+        System.out.format("Comparison report at: %s%n", report.getPath());
+    }
+
+    /**
+     * Adds an agent to compare, the first one added is the baseline. All the campaigns must
+     * have the same board, episodes, seed and options.
+     * @param campaign The campaign of the agent
+     */
+    public void add(Campaign campaign) {
+        if (!campaigns.isEmpty()) {
+            Campaign baseline = campaigns.get(0);
+            if (campaign.getWidth() != baseline.getWidth() ||
+                    campaign.getHeight() != baseline.getHeight() ||
+                    campaign.getEpisodes() != baseline.getEpisodes() ||
+                    campaign.getSeed() != baseline.getSeed()) {
+                throw new IllegalArgumentException("The campaigns do not play the same episodes.");
+            }
+        }
+        campaigns.add(campaign);
+        statistics.add(new Statistics());
+        differences.add(new Difference());
+    }
+
+    /**
+     * Sets the number of episodes of each parallel task.
+     * @param value The number of episodes
+     */
+    public void setBlock(int value) {
+        block = value;
+    }
+
+    /**
+     * Returns the statistics of an agent.
+     * @param agent The agent position, in the order they were added
+     * @return The statistics instance
+     */
+    public Statistics getStatistics(int agent) {
+        return statistics.get(agent);
+    }
+
+    /**
+     * Returns the paired differences of an agent to the baseline.
+     * @param agent The agent position, in the order they were added
+     * @return The difference instance
+     */
+    public Difference getDifference(int agent) {
+        return differences.get(agent);
+    }
+
+    /**
+     * Plays all the episodes with every agent, in blocks at parallel.
+     * @param executor The executor to play the blocks
+     * @throws InterruptedException
+     * @throws ExecutionException When some episode fails
+     */
+    public void run(ExecutorService executor) throws InterruptedException, ExecutionException {
+        long episodes = campaigns.get(0).getEpisodes();
+        List<Future<Comparison>> tasks = new ArrayList<Future<Comparison>>();
+        for (long from = 0; from < episodes; from += block) {
+            final long start = from;
+            final long end = Math.min(from + block, episodes);
+            tasks.add(executor.submit(new Callable<Comparison>() {
+                public Comparison call() throws Exception {
+                    return play(start, end);
+                }
+            }));
+        }
+        // Merge in the order of the blocks
+        for (Future<Comparison> task : tasks) {
+            Comparison partial = task.get();
+            for (int i = 0; i < campaigns.size(); i++) {
+                statistics.get(i).merge(partial.statistics.get(i));
+                differences.get(i).merge(partial.differences.get(i));
+            }
+        }
+    }
+
+    /**
+     * Writes one CSV line for each agent.
+     * @param report The report writer
+     * @throws IOException
+     */
+    public void write(Writer report) throws IOException {
+        report.append(REPORT_HEADER);
+        String baseline = campaigns.get(0).getAgentName();
+        for (int i = 0; i < campaigns.size(); i++) {
+            Statistics agent = statistics.get(i);
+            Difference difference = differences.get(i);
+            report.append(String.format("%s,%s,%d,%.4f,%.2f,%.4f,%.4f,%.4f,%.2f,%.2f,%.2f,%.2f%n",
+                    campaigns.get(i).getAgentName(), baseline, agent.getEpisodes(),
+                    agent.getWinRate(), agent.getMeanScore(), difference.getWin(),
+                    difference.getWin() - difference.getWinMargin(),
+                    difference.getWin() + difference.getWinMargin(), difference.getScore(),
+                    difference.getScore() - difference.getScoreMargin(),
+                    difference.getScore() + difference.getScoreMargin(), getVarianceReduction(i)));
+        }
+    }
+
+    /**
+     * Renders the differences of every agent to the baseline as an ASCII table.
+     * @return The comparison table
+     */
+    public String render() {
+        StringBuilder table = new StringBuilder();
+        String line = "+------------------------------------------------------------------------" +
+                "----------------------+%n";
+        table.append(String.format(line));
+        table.append(String.format("| %-20s | %8s | %10s | %-19s | %-23s |%n",
+                "Agent", "Win rate", "Mean score", "Win diff (95%)", "Score diff (95%)"));
+        table.append(String.format("| %-20s | %8s | %10s | %-19s | %-23s |%n",
+                "--------------------", "--------", "----------", "-------------------",
+                "-----------------------"));
+        for (int i = 0; i < campaigns.size(); i++) {
+            Statistics agent = statistics.get(i);
+            Difference difference = differences.get(i);
+            table.append(String.format("| %-20s | %7.2f%% | %10.2f | %+7.2f%% ± %7.2f%% | " +
+                    "%+10.2f ± %10.2f |%n", campaigns.get(i).getAgentName(),
+                    agent.getWinRate() * 100, agent.getMeanScore(), difference.getWin() * 100,
+                    difference.getWinMargin() * 100, difference.getScore(),
+                    difference.getScoreMargin()));
+        }
+        table.append(String.format(line));
+        for (int i = 1; i < campaigns.size(); i++) {
+            table.append(String.format("Pairing %s saved %.1fx the episodes.%n",
+                    campaigns.get(i).getAgentName(), getVarianceReduction(i)));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Returns the variance of the score difference of independent campaigns over the variance of
+     * the paired difference.
+     * @param agent The agent position, in the order they were added
+     * @return The variance ratio, zero for the baseline
+     */
+    public double getVarianceReduction(int agent) {
+        if (agent == 0) return 0;
+        double paired = differences.get(agent).getScoreVariance();
+        double a = statistics.get(0).getScoreDeviation();
+        double b = statistics.get(agent).getScoreDeviation();
+        return paired > 0 ? (a * a + b * b) / paired : 0;
+    }
+
+    /**
+     * Plays a block of episodes with every agent.
+     * @param from The first episode, inclusive
+     * @param to The last episode, exclusive
+     * @return The outcome of the block
+     * @throws InterruptedException
+     */
+    private Comparison play(long from, long to) throws InterruptedException {
+        int count = campaigns.size();
+        Comparison partial = new Comparison();
+        World[] worlds = new World[count];
+        for (int i = 0; i < count; i++) {
+            partial.add(campaigns.get(i));
+            worlds[i] = campaigns.get(i).createWorld();
+        }
+        Campaign baseline = campaigns.get(0);
+        Solvability classifier = baseline.createClassifier();
+        int[] scores = new int[count];
+        int[] wins = new int[count];
+
+        for (long episode = from; episode < to; episode++) {
+            // The layout is built once and played by every agent
+            Layout layout = baseline.generate(worlds[0], classifier, episode);
+            for (int i = 0; i < count; i++) {
+                World world = worlds[i];
+                world.execute(campaigns.get(i).createAgent(episode), layout);
+                Result result = world.getResult();
+                scores[i] = world.getPlayer().getScore();
+                wins[i] = result == Result.WIN ? 1 : 0;
+                partial.statistics.get(i).add(result, scores[i],
+                        world.getPlayer().getActions().size());
+            }
+            for (int i = 0; i < count; i++) {
+                partial.differences.get(i).add(scores[i] - scores[0], wins[i] - wins[0]);
+            }
+        }
+        return partial;
+    }
+}
@@ -0,0 +1,164 @@
+package trials;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps a warmed-up engine resident and plays campaign jobs received at a loopback socket, so
+ * short campaigns do not pay the JVM start and the JIT warm-up at every run. Each connection
+ * sends a single line with the campaign arguments and receives the report lines as the episodes
+ * are played, followed by <tt>OK</tt> or <tt>ERROR</tt> and a message. The jobs are queued and
+ * played by a fixed number of threads.
+ * <pre>
+ *     Daemon PORT [THREADS] [WARMUP]
+ *     request:  AGENT WIDTH HEIGHT EPISODES SEED [OPTION=VALUE...]
+ *     response: the report lines, then OK or ERROR message
+ * </pre>
+ */
+public class Daemon {
+    public static final String OK = "OK";
+    public static final String ERROR = "ERROR";
+
+    private static final int DEFAULT_WARMUP = 20000;
+    private static final int BLOCK = 1000;
+    private static final String[] WARMUP_AGENTS = {"HeuristicAgent", "RandomAgent"};
+    private static final int[] WARMUP_SIZES = {4, 8};
+
+    private final ExecutorService jobs;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) :
+                Runtime.getRuntime().availableProcessors();
+        int warmup = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_WARMUP;
+
+        Daemon daemon = new Daemon(threads);
+        long executionTime = System.currentTimeMillis();
+        daemon.warmUp(warmup);
+        executionTime = System.currentTimeMillis() - executionTime;
+        System.out.format("Warmed up in %dms.%n", executionTime);
+
+        ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        System.out.format("Listening at %s:%d with %d threads.%n",
+                server.getInetAddress().getHostAddress(), server.getLocalPort(), threads);
+        daemon.serve(server);
+    }
+
+    /**
+     * The daemon constructor.
+     * @param threads The number of jobs played at the same time
+     */
+    public Daemon(int threads) {
+        jobs = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Plays some episodes of every known agent and board size, at the same threads of the jobs,
+     * so the engine code is compiled before the first job arrives.
+     * @param episodes The number of episodes of each agent and board size
+     * @throws InterruptedException
+     * @throws ExecutionException When some episode fails
+     */
+    public void warmUp(final int episodes) throws InterruptedException, ExecutionException {
+        for (String agent : WARMUP_AGENTS) {
+            for (int size : WARMUP_SIZES) {
+                final Campaign campaign = new Campaign(agent, size, size, episodes, 0);
+                jobs.submit(new Callable<Statistics>() {
+                    public Statistics call() throws Exception {
+                        return campaign.run(0, episodes, null);
+                    }
+                }).get();
+            }
+        }
+    }
+
+    /**
+     * Accepts connections until the socket is closed, each one at its own thread.
+     * @param server The server socket
+     * @throws IOException
+     */
+    public void serve(ServerSocket server) throws IOException {
+        try {
+            while (!server.isClosed()) {
+                final Socket socket = server.accept();
+                connections.execute(new Runnable() {
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            }
+        } finally {
+            connections.shutdownNow();
+            jobs.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the job of a connection, queues it and streams its report back.
+     * @param socket The client socket
+     */
+    private void handle(Socket socket) {
+        try {
+            try {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                final Writer writer = new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+                String line = reader.readLine();
+                try {
+                    if (line == null) throw new IOException("Empty request.");
+                    final Campaign campaign = Campaign.fromArguments(line.trim().split("\\s+"), 0);
+                    Future<Void> job = jobs.submit(new Callable<Void>() {
+                        public Void call() throws Exception {
+                            play(campaign, writer);
+                            return null;
+                        }
+                    });
+                    job.get();
+                    writer.append(OK).append('\n');
+                } catch (ExecutionException error) {
+                    writer.append(ERROR).append(' ').append(String.valueOf(error.getCause()))
+                            .append('\n');
+                } catch (RuntimeException error) {
+                    writer.append(ERROR).append(' ').append(String.valueOf(error)).append('\n');
+                }
+                writer.flush();
+            } finally {
+                socket.close();
+            }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        } catch (IOException error) {
+            // The client has gone away
+        }
+    }
+
+    /**
+     * Plays a campaign, flushing the report after each block of episodes.
+     * @param campaign The campaign
+     * @param writer The client writer
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private static void play(Campaign campaign, Writer writer) throws IOException,
+            InterruptedException {
+        writer.append(campaign.getReportHeader());
+        for (long from = 0; from < campaign.getEpisodes(); from += BLOCK) {
+            campaign.run(from, Math.min(from + BLOCK, campaign.getEpisodes()), writer);
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package trials;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import wumpus.Environment.Result;
+
+/**
+ * Sends a campaign job to a running {@link Daemon} and saves the report it streams back, the
+ * statistics are aggregated from the report lines as they arrive.
+ * <pre>
+ *     DaemonClient PORT AGENT WIDTH HEIGHT EPISODES SEED [OPTION=VALUE...]
+ * </pre>
+ */
+public class DaemonClient {
+    private static final String DEFAULT_REPORT_FOLDER = "./target/trial-reports";
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        Campaign campaign = Campaign.fromArguments(args, 1);
+
+        File folder = new File(DEFAULT_REPORT_FOLDER);
+        if (!folder.exists()) folder.mkdirs();
+        File report = new File(folder, campaign.getAgentName() + "-daemon.csv");
+
+        long executionTime = System.currentTimeMillis();
+        Writer writer = new BufferedWriter(new FileWriter(report));
+        Statistics statistics;
+        try {
+            statistics = submit(port, campaign, writer);
+        } finally {
+            writer.close();
+        }
+        executionTime = System.currentTimeMillis() - executionTime;
+
+        System.out.println(statistics.render());
+        System.out.format("Finished in %dms.%n", executionTime);
+        System.out.format("Trial report at: %s%n", report.getPath());
+    }
+
+    /**
+     * Plays a campaign at the daemon.
+     * @param port The daemon port at the loopback address
+     * @param campaign The campaign
+     * @param report The report writer
+     * @return The statistics of the campaign
+     * @throws IOException When the daemon fails to play the campaign
+     */
+    public static Statistics submit(int port, Campaign campaign, Writer report)
+            throws IOException {
+        Statistics statistics = new Statistics();
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            Writer request = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            StringBuilder line = new StringBuilder();
+            for (String argument : campaign.toArguments()) {
+                if (line.length() > 0) line.append(' ');
+                line.append(argument);
+            }
+            request.append(line).append('\n');
+            request.flush();
+
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String row;
+            while ((row = reader.readLine()) != null) {
+                if (row.equals(Daemon.OK)) return statistics;
+                if (row.startsWith(Daemon.ERROR)) throw new IOException(row);
+                report.append(row).append('\n');
+                // Aggregate the episode lines, skipping the header
+                String[] columns = row.split(",");
+                if (!Character.isDigit(columns[0].charAt(0))) continue;
+                statistics.add(Result.valueOf(columns[1]), Integer.parseInt(columns[2]),
+                        Integer.parseInt(columns[3]));
+            }
+            throw new IOException("The daemon has closed the connection.");
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package trials;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import wumpus.Environment;
+import wumpus.Layout;
+import wumpus.Player;
+import wumpus.Solvability;
+import wumpus.Solvability.Label;
+import wumpus.World;
+
+/**
+ * Plays an agent once at every layout the random boards of a campaign can have, instead of a
+ * sample of them, so the win rate and the score distribution of a deterministic agent are exact.
+ * The layouts place the Wumpus, the pits and the gold at the positions {@link World} draws them
+ * from, never at the start, its neighbors or the last position. The elements of a kind are
+ * interchangeable, so each set of positions is played once and not once for every order.
+ * <p>
+ * Every layout has the same chance to be drawn by the random boards, then the campaign sampling
+ * weights of the layout classes are applied, so the results are the ones of an infinite campaign.
+ * The layouts are ranked and played in blocks at parallel.
+ * <pre>
+ *     Enumeration AGENT WIDTH HEIGHT [OPTION=VALUE...]
+ *     Enumeration HeuristicAgent 4 4
+ * </pre>
+ */
+public class Enumeration {
+    private static final String DEFAULT_REPORT_FOLDER = "./target/trial-reports";
+    private static final String REPORT_HEADER = "Score,Probability,Layouts\n";
+    private static final int DEFAULT_BLOCK = 1000;
+    private static final int MAX_ACTION_COST = 10;
+    private static final Label[] LABELS = Label.values();
+
+    private final Campaign campaign;
+    private final int[] positions;
+    private final int wumpus;
+    private final int pits;
+    private final int gold;
+    private final int minScore;
+    private final long layouts;
+    private int block = DEFAULT_BLOCK;
+
+    // Integer tallies of each class, merged in any order
+    private final Statistics[] statistics = new Statistics[LABELS.length];
+    private final long[][] scores;
+
+    public static void main(String[] args) throws Exception {
+        String[] campaignArgs = new String[args.length + 2];
+        System.arraycopy(args, 0, campaignArgs, 0, 3);
+        campaignArgs[3] = "0";
+        campaignArgs[4] = "0";
+        System.arraycopy(args, 3, campaignArgs, 5, args.length - 3);
+        Enumeration enumeration = new Enumeration(Campaign.fromArguments(campaignArgs, 0));
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        long executionTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            enumeration.run(executor);
+        } finally {
+            executor.shutdown();
+        }
+        executionTime = System.currentTimeMillis() - executionTime;
+
+        File folder = new File(DEFAULT_REPORT_FOLDER);
+        if (!folder.exists()) folder.mkdirs();
+        File report = new File(folder, args[0] + "-enumeration.csv");
+        Writer writer = new BufferedWriter(new FileWriter(report));
+        try {
+            enumeration.write(writer);
+        } finally {
+            writer.close();
+        }
+        System.out.println(enumeration.render());
+        if (!Agents.isDeterministic(args[0])) {
+            System.out.format("%s is not deterministic, a single game was played at each " +
+                    "layout.%n", args[0]);
+        }
+        System.out.format("Finished in %dms.%n", executionTime);
+        System.out.format("Score distribution at: %s%n", report.getPath());
+    }
+
+    /**
+     * The enumeration constructor.
+     * @param campaign The campaign with the agent, board and options, the episodes and seed are
+     *                 not used
+     * @throws InterruptedException
+     * @throws IllegalArgumentException When the layouts can not be counted
+     */
+    public Enumeration(Campaign campaign) throws InterruptedException {
+        this.campaign = campaign;
+        World world = campaign.createWorld();
+        int count = 0;
+        int[] candidates = new int[world.getWidth() * world.getHeight()];
+        for (int i = 0; i < candidates.length; i++) {
+            if (world.isRandomPosition(i)) candidates[count++] = i;
+        }
+        positions = new int[count];
+        System.arraycopy(candidates, 0, positions, 0, count);
+        wumpus = campaign.getWumpus();
+        pits = campaign.getPits();
+        gold = world.getGold();
+        if (wumpus + pits + gold > count) {
+            throw new IllegalArgumentException("The elements do not fit the board.");
+        }
+        try {
+            layouts = Math.multiplyExact(choose(count, wumpus), Math.multiplyExact(
+                    choose(count - wumpus, pits), choose(count - wumpus - pits, gold)));
+        } catch (ArithmeticException error) {
+            throw new IllegalArgumentException("Too many layouts to enumerate.", error);
+        }
+        // Every action costs at most as much as a shot
+        minScore = Environment.DEATH_SCORE - MAX_ACTION_COST * world.getMaxSteps();
+        scores = new long[LABELS.length][Environment.GOLD_SCORE - minScore + 1];
+        for (int i = 0; i < LABELS.length; i++) {
+            statistics[i] = new Statistics();
+        }
+    }
+
+    /**
+     * Sets the number of layouts of each parallel task.
+     * @param value The number of layouts
+     */
+    public void setBlock(int value) {
+        block = value;
+    }
+
+    /**
+     * Returns the number of layouts the random boards can have.
+     * @return The layouts count
+     */
+    public long getLayouts() {
+        return layouts;
+    }
+
+    /**
+     * Returns the statistics of the layouts of a class, each one played once.
+     * @param label The class of layouts
+     * @return The statistics instance
+     */
+    public Statistics getStatistics(Label label) {
+        return statistics[label.ordinal()];
+    }
+
+    /**
+     * Plays every layout, in blocks at parallel.
+     * @param executor The executor to play the blocks
+     * @throws InterruptedException
+     * @throws ExecutionException When some episode fails
+     */
+    public void run(ExecutorService executor) throws InterruptedException, ExecutionException {
+        List<Future<Enumeration>> tasks = new ArrayList<Future<Enumeration>>();
+        for (long from = 0; from < layouts; from += block) {
+            final long start = from;
+            final long end = Math.min(from + block, layouts);
+            tasks.add(executor.submit(new Callable<Enumeration>() {
+                public Enumeration call() throws Exception {
+                    return play(start, end);
+                }
+            }));
+        }
+        for (Future<Enumeration> task : tasks) {
+            merge(task.get());
+        }
+    }
+
+    /**
+     * Returns the probability of the layouts of a class being played by the campaign.
+     * @param label The class of layouts
+     * @return The probability between 0 and 1
+     */
+    public double getProbability(Label label) {
+        double total = 0;
+        for (Label other : LABELS) {
+            total += campaign.getSampling(other) * getStatistics(other).getEpisodes();
+        }
+        double weight = campaign.getSampling(label) * getStatistics(label).getEpisodes();
+        return total > 0 ? weight / total : 0;
+    }
+
+    /**
+     * Returns the exact win rate of the campaign.
+     * @return The win rate between 0 and 1
+     */
+    public double getWinRate() {
+        double rate = 0;
+        for (Label label : LABELS) {
+            rate += getProbability(label) * getStatistics(label).getWinRate();
+        }
+        return rate;
+    }
+
+    /**
+     * Returns the exact mean score of the campaign.
+     * @return The mean score
+     */
+    public double getMeanScore() {
+        double mean = 0;
+        for (Label label : LABELS) {
+            mean += getProbability(label) * getStatistics(label).getMeanScore();
+        }
+        return mean;
+    }
+
+    /**
+     * Returns the probability of each score, from the lowest possible score.
+     * @return The probabilities of the scores
+     */
+    public double[] getDistribution() {
+        double[] distribution = new double[scores[0].length];
+        for (Label label : LABELS) {
+            long count = getStatistics(label).getEpisodes();
+            if (count == 0) continue;
+            double weight = getProbability(label) / count;
+            long[] counts = scores[label.ordinal()];
+            for (int i = 0; i < counts.length; i++) {
+                distribution[i] += counts[i] * weight;
+            }
+        }
+        return distribution;
+    }
+
+    /**
+     * Writes one CSV line for each score with some chance.
+     * @param report The report writer
+     * @throws IOException
+     */
+    public void write(Writer report) throws IOException {
+        report.append(REPORT_HEADER);
+        double[] distribution = getDistribution();
+        for (int i = 0; i < distribution.length; i++) {
+            long count = 0;
+            for (long[] counts : scores) count += counts[i];
+            if (count == 0) continue;
+            report.append(String.format("%d,%.9f,%d%n", minScore + i, distribution[i], count));
+        }
+    }
+
+    /**
+     * Renders the outcome of each class of layouts and of the whole campaign as an ASCII table.
+     * @return The enumeration table
+     */
+    public String render() {
+        StringBuilder table = new StringBuilder();
+        String line = "+--------------------------------------------------------------+%n";
+        table.append(String.format(line));
+        table.append(String.format("| %-10s | %10s | %11s | %8s | %10s |%n",
+                "Class", "Layouts", "Probability", "Win rate", "Mean score"));
+        table.append(String.format("| %-10s | %10s | %11s | %8s | %10s |%n",
+                "----------", "----------", "-----------", "--------", "----------"));
+        for (Label label : LABELS) {
+            Statistics item = getStatistics(label);
+            table.append(String.format("| %-10s | %10d | %10.4f%% | %7.2f%% | %10.2f |%n",
+                    label, item.getEpisodes(), getProbability(label) * 100,
+                    item.getWinRate() * 100, item.getMeanScore()));
+        }
+        table.append(String.format("| %-10s | %10d | %10.4f%% | %7.3f%% | %10.3f |%n",
+                "All", layouts, 100.0, getWinRate() * 100, getMeanScore()));
+        table.append(String.format(line));
+        return table.toString();
+    }
+
+    /**
+     * Adds the tallies of a block into this enumeration.
+     * @param other The enumeration of the block
+     */
+    private void merge(Enumeration other) {
+        for (int i = 0; i < LABELS.length; i++) {
+            statistics[i].merge(other.statistics[i]);
+            long[] counts = scores[i];
+            for (int j = 0; j < counts.length; j++) {
+                counts[j] += other.scores[i][j];
+            }
+        }
+    }
+
+    /**
+     * Plays a block of layouts by their ranks.
+     * @param from The first rank, inclusive
+     * @param to The last rank, exclusive
+     * @return The tallies of the block
+     * @throws InterruptedException
+     */
+    private Enumeration play(long from, long to) throws InterruptedException {
+        Enumeration partial = new Enumeration(campaign);
+        World world = campaign.createWorld();
+        Player player = world.getPlayer();
+        Solvability classifier = campaign.createClassifier();
+        int[] free = new int[positions.length];
+        int[] rest = new int[positions.length];
+        long pitsLayouts = choose(positions.length - wumpus, pits);
+        long goldLayouts = choose(positions.length - wumpus - pits, gold);
+
+        for (long rank = from; rank < to; rank++) {
+            // The rank is the mixed radix number of the Wumpus, pits and gold combinations
+            System.arraycopy(positions, 0, free, 0, positions.length);
+            int size = positions.length;
+            int[] wumpusAt = new int[wumpus];
+            int[] pitsAt = new int[pits];
+            int[] goldAt = new int[gold];
+            size = unrank(rank / (pitsLayouts * goldLayouts), free, size, wumpusAt, rest);
+            size = unrank(rank / goldLayouts % pitsLayouts, rest, size, pitsAt, free);
+            unrank(rank % goldLayouts, free, size, goldAt, rest);
+            Layout layout = new Layout(world.getWidth(), world.getHeight(), wumpusAt, pitsAt,
+                    goldAt);
+
+            world.reset(layout);
+            Label label = classifier.classify(layout, world.getStartPosition(),
+                    player.getArrows());
+            if (campaign.getSampling(label) <= 0) {
+                // The class is never played, only counted
+                partial.statistics[label.ordinal()].add(Environment.Result.LOOSE, 0, 0);
+                continue;
+            }
+            world.execute(campaign.createAgent(rank), layout);
+            int score = player.getScore();
+            partial.statistics[label.ordinal()].add(world.getResult(), score,
+                    player.getActions().size());
+            partial.scores[label.ordinal()][score - minScore]++;
+        }
+        return partial;
+    }
+
+    /**
+     * Picks the combination of a rank at the lexicographic order of the combinations of the
+     * available positions.
+     * @param rank The combination rank
+     * @param available The available positions, in ascending order
+     * @param size The number of available positions
+     * @param chosen The positions picked, its length is the number to pick
+     * @param left The positions not picked, in ascending order
+     * @return The number of positions not picked
+     */
+    private static int unrank(long rank, int[] available, int size, int[] chosen, int[] left) {
+        int picked = 0;
+        int remaining = 0;
+        for (int i = 0; i < size; i++) {
+            if (picked < chosen.length) {
+                // The combinations that start with this position
+                long count = choose(size - i - 1, chosen.length - picked - 1);
+                if (rank < count) {
+                    chosen[picked++] = available[i];
+                    continue;
+                }
+                rank -= count;
+            }
+            left[remaining++] = available[i];
+        }
+        return remaining;
+    }
+
+    /**
+     * Returns the number of combinations of k elements out of n.
+     * @param n The number of elements
+     * @param k The number to choose
+     * @return The binomial coefficient
+     * @throws ArithmeticException When it does not fit a long
+     */
+    private static long choose(int n, int k) {
+        if (k < 0 || k > n) return 0;
+        k = Math.min(k, n - k);
+        long result = 1;
+        for (int i = 0; i < k; i++) {
+            result = Math.multiplyExact(result, n - i) / (i + 1);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,406 @@
+package trials;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import wumpus.Agent;
+import wumpus.AllocationMeter;
+import wumpus.Environment.Result;
+import wumpus.Layout;
+import wumpus.Player;
+import wumpus.Solvability;
+import wumpus.Solvability.Label;
+import wumpus.Solver;
+import wumpus.Spectator;
+import wumpus.World;
+
+/**
+ * Plays a campaign as a pipeline of three stages connected by bounded lock-free queues: the
+ * generators build the board layouts ahead of time, the simulators play the agent on them and
+ * the writers format the report lines. Each stage has its own number of threads, and a stage
+ * that runs ahead blocks on the full queue until the next one catches up. The monitor prints
+ * the throughput of each stage and the depth of each queue, a full queue points to a slow
+ * consumer and an empty one to a slow producer.
+ * <p>
+ * The report lines are written in the order the episodes finish, each one tagged with its
+ * episode index.
+ * <pre>
+ *     Pipeline GENERATORS SIMULATORS WRITERS AGENT WIDTH HEIGHT EPISODES SEED [OPTION=VALUE...]
+ * </pre>
+ */
+public class Pipeline {
+    private static final String DEFAULT_REPORT_FOLDER = "./target/trial-reports";
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final long DEFAULT_MONITOR_INTERVAL = 1000;
+
+    /**
+     * The episode that flows through the stages, the end of the stream is marked by an episode
+     * with a negative index.
+     */
+    private static class Episode {
+        final long index;
+        final Layout layout;
+        final Label label;
+        final int distance;
+        final int optimal;
+        Result result;
+        int score;
+        int steps;
+        long resetBytes = -1;
+        long engineBytes;
+        long agentBytes;
+        int violations;
+
+        Episode(long index, Layout layout, Label label, int distance, int optimal) {
+            this.index = index;
+            this.layout = layout;
+            this.label = label;
+            this.distance = distance;
+            this.optimal = optimal;
+        }
+    }
+
+    private static final Episode END = new Episode(-1, null, null, -1, 0);
+
+    /**
+     * A stage of the pipeline, with its threads and counters.
+     */
+    public static class Stage {
+        private final String name;
+        private final int threads;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicInteger running = new AtomicInteger();
+        // Read by the monitor thread
+        private volatile long start;
+        private volatile long end;
+
+        Stage(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        /**
+         * Returns the stage name.
+         * @return The name
+         */
+        public String getName() { return name; }
+
+        /**
+         * Returns the number of episodes that have left this stage.
+         * @return The episodes count
+         */
+        public long getProcessed() { return processed.get(); }
+
+        /**
+         * Returns the episodes per second since the stage has started.
+         * @return The throughput
+         */
+        public double getThroughput() {
+            long elapsed = (end > 0 ? end : System.nanoTime()) - start;
+            return elapsed <= 0 ? 0 : processed.get() * 1e9 / elapsed;
+        }
+    }
+
+    private final Campaign campaign;
+    private final Stage generators;
+    private final Stage simulators;
+    private final Stage writers;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private long monitorInterval = DEFAULT_MONITOR_INTERVAL;
+
+    private RingQueue<Episode> layouts;
+    private RingQueue<Episode> results;
+    private final List<Thread> threads = new ArrayList<Thread>();
+    private final List<Throwable> errors = new ArrayList<Throwable>();
+
+    public static void main(String[] args) throws Exception {
+        Pipeline pipeline = new Pipeline(Campaign.fromArguments(args, 3),
+                Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+
+        File folder = new File(DEFAULT_REPORT_FOLDER);
+        if (!folder.exists()) folder.mkdirs();
+        File report = new File(folder, pipeline.campaign.getAgentName() + "-pipeline.csv");
+
+        Writer writer = new BufferedWriter(new FileWriter(report));
+        Statistics statistics;
+        try {
+            statistics = pipeline.run(writer);
+        } finally {
+            writer.close();
+        }
+        System.out.println(statistics.render());
+        System.out.println(pipeline.renderStages());
+        System.out.format("Trial report at: %s%n", report.getPath());
+    }
+
+    /**
+     * The pipeline constructor.
+     * @param campaign The campaign to play
+     * @param generators The number of threads building layouts
+     * @param simulators The number of threads playing the agent
+     * @param writers The number of threads writing the report
+     */
+    public Pipeline(Campaign campaign, int generators, int simulators, int writers) {
+        this.campaign = campaign;
+        this.generators = new Stage("generate", generators);
+        this.simulators = new Stage("simulate", simulators);
+        this.writers = new Stage("write", writers);
+    }
+
+    /**
+     * Sets the capacity of each queue between the stages.
+     * @param value The number of episodes
+     */
+    public void setQueueCapacity(int value) {
+        queueCapacity = value;
+    }
+
+    /**
+     * Sets how often the stages progress is printed.
+     * @param value The interval in milliseconds, zero to not print
+     */
+    public void setMonitorInterval(long value) {
+        monitorInterval = value;
+    }
+
+    /**
+     * Plays all the episodes of the campaign through the stages.
+     * @param report The report writer
+     * @return The statistics of the campaign
+     * @throws IOException When some stage fails
+     * @throws InterruptedException
+     */
+    public Statistics run(final Writer report) throws IOException, InterruptedException {
+        layouts = new RingQueue<Episode>(queueCapacity);
+        results = new RingQueue<Episode>(queueCapacity);
+        final AtomicLong nextEpisode = new AtomicLong();
+        final Statistics statistics = new Statistics();
+        threads.clear();
+        errors.clear();
+
+        synchronized (report) {
+            report.append(campaign.getReportHeader());
+        }
+        // Build the layouts of the episodes in any order
+        create(generators, simulators, layouts, new Task() {
+            public void run() throws Exception {
+                World world = campaign.createWorld();
+                Solvability classifier = campaign.createClassifier();
+                Solver solver = campaign.isRegret() ? campaign.createSolver() : null;
+                long episode;
+                while ((episode = nextEpisode.getAndIncrement()) < campaign.getEpisodes()) {
+                    Layout layout = campaign.generate(world, classifier, episode);
+                    layouts.put(new Episode(episode, layout, classifier.getLabel(),
+                            classifier.getDistance(),
+                            campaign.solve(world, solver, classifier, layout)));
+                    generators.processed.incrementAndGet();
+                }
+            }
+        });
+        // Play the agent at the layouts
+        create(simulators, writers, results, new Task() {
+            public void run() throws Exception {
+                World world = campaign.createWorld();
+                campaign.watch(world);
+                Spectator spectator = campaign.getSpectator();
+                AllocationMeter meter = campaign.isAllocations() ? new AllocationMeter() : null;
+                world.setAllocationMeter(meter);
+                Player player = world.getPlayer();
+                Episode episode;
+                while ((episode = layouts.take()) != END) {
+                    Agent agent = campaign.createAgent(episode.index);
+                    world.execute(agent, episode.layout);
+                    episode.violations = Campaign.getViolations(agent);
+                    episode.result = world.getResult();
+                    episode.score = player.getScore();
+                    episode.steps = player.getActions().size();
+                    if (spectator != null) spectator.count(episode.score);
+                    if (meter != null) {
+                        episode.resetBytes = meter.getReset();
+                        episode.engineBytes = meter.getEngine();
+                        episode.agentBytes = meter.getAgent();
+                    }
+                    results.put(episode);
+                    simulators.processed.incrementAndGet();
+                }
+            }
+        });
+        // Format and write the report lines
+        create(writers, null, null, new Task() {
+            public void run() throws Exception {
+                StringWriter lines = new StringWriter();
+                Statistics local = new Statistics();
+                Episode episode;
+                while ((episode = results.take()) != END) {
+                    Campaign.appendColumns(lines, episode.index, episode.result, episode.score,
+                            episode.steps, episode.label, episode.distance,
+                            episode.optimal);
+                    if (episode.resetBytes >= 0) {
+                        Campaign.appendAllocations(lines, episode.steps, episode.resetBytes,
+                                episode.engineBytes, episode.agentBytes);
+                    }
+                    if (campaign.isBudgeted()) {
+                        Campaign.appendViolations(lines, episode.violations);
+                    }
+                    lines.append('\n');
+                    local.add(episode.result, episode.score, episode.steps);
+                    writers.processed.incrementAndGet();
+                    // Write in batches to hold the report lock less often
+                    if (lines.getBuffer().length() >= 8192) {
+                        synchronized (report) {
+                            report.append(lines.getBuffer());
+                            lines.getBuffer().setLength(0);
+                        }
+                    }
+                }
+                synchronized (report) {
+                    report.append(lines.getBuffer());
+                }
+                synchronized (statistics) {
+                    statistics.merge(local);
+                }
+            }
+        });
+        // All the threads exist before any of them starts, so a failure reaches all of them
+        long now = System.nanoTime();
+        generators.start = now;
+        simulators.start = now;
+        writers.start = now;
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        monitor();
+        if (!errors.isEmpty()) {
+            throw new IOException("The pipeline has failed.", errors.get(0));
+        }
+        return statistics;
+    }
+
+    /**
+     * Renders the throughput of each stage and the depth of each queue as a single line.
+     * @return The stages progress
+     */
+    public String renderStages() {
+        return String.format("%s %,.0f/s [%d/%d] %s %,.0f/s [%d/%d] %s %,.0f/s",
+                generators.getName(), generators.getThroughput(),
+                layouts.size(), layouts.capacity(),
+                simulators.getName(), simulators.getThroughput(),
+                results.size(), results.capacity(),
+                writers.getName(), writers.getThroughput());
+    }
+
+    /**
+     * Returns the stages in the order the episodes flow through them.
+     * @return The stages array
+     */
+    public Stage[] getStages() {
+        return new Stage[]{generators, simulators, writers};
+    }
+
+    /**
+     * The work of each thread of a stage.
+     */
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Creates the threads of a stage, the last thread to finish tells the next stage the stream
+     * has ended. The threads are started by {@link #run(Writer)}.
+     * @param stage The stage
+     * @param next The next stage or <tt>null</tt> if this is the last one
+     * @param output The queue to the next stage
+     * @param task The work of each thread
+     */
+    private void create(final Stage stage, final Stage next, final RingQueue<Episode> output,
+                        final Task task) {
+        stage.end = 0;
+        stage.running.set(stage.threads);
+        for (int i = 0; i < stage.threads; i++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        // A thread started after a failure may have missed its interruption
+                        if (!isFailed()) task.run();
+                    } catch (Throwable error) {
+                        fail(error);
+                    } finally {
+                        if (stage.running.decrementAndGet() == 0) {
+                            stage.end = System.nanoTime();
+                            if (next != null) end(next, output);
+                        }
+                    }
+                }
+            }, "pipeline-" + stage.getName() + "-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * Returns weather some thread has failed.
+     * @return <tt>true</tt> if an error was recorded
+     */
+    private boolean isFailed() {
+        synchronized (errors) {
+            return !errors.isEmpty();
+        }
+    }
+
+    /**
+     * Records the first error and interrupts all the threads, so no stage keeps waiting for a
+     * stage that has stopped.
+     * @param error The error
+     */
+    private void fail(Throwable error) {
+        synchronized (errors) {
+            errors.add(error);
+            if (errors.size() > 1) return;
+        }
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Tells every thread of a stage the stream has ended.
+     * @param stage The stage
+     * @param queue The stage input queue
+     */
+    private void end(Stage stage, RingQueue<Episode> queue) {
+        // The threads waiting for the end were interrupted by the failure
+        if (isFailed()) return;
+        try {
+            for (int i = 0; i < stage.threads; i++) {
+                queue.put(END);
+            }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for all the threads, printing the stages progress at each interval.
+     * @throws InterruptedException
+     */
+    private void monitor() throws InterruptedException {
+        long interval = monitorInterval > 0 ? monitorInterval : Long.MAX_VALUE;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                thread.join(interval == Long.MAX_VALUE ? 0 : interval);
+                if (monitorInterval > 0 && thread.isAlive()) {
+                    System.out.println(renderStages());
+                }
+            }
+        }
+    }
+}
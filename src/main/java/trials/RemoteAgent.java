@@ -0,0 +1,142 @@
+package trials;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+
+import agents.QLearningAgent;
+import agents.QTable;
+import wumpus.Environment.Action;
+
+/**
+ * A reference agent service of the {@link RemoteCampaign} protocol, the part a model served at
+ * another process would implement. It answers every observation as a {@link QLearningAgent} of
+ * a table learned by {@link Training} would, one agent for each game started again at every new
+ * episode, or with random actions when there is no table. Each connection is served by its own
+ * thread.
+ * <pre>
+ *     RemoteAgent PORT [TABLE_FILE]
+ *     RemoteAgent 47100 ./target/q-tables/4x4.bin
+ * </pre>
+ */
+public class RemoteAgent {
+    private static final int ACTIONS = Action.values().length;
+
+    private final QTable table;
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        QTable table = args.length > 1 ? QTable.read(new File(args[1])) : null;
+        final RemoteAgent agent = new RemoteAgent(table);
+
+        ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        System.out.format("Listening at %s:%d.%n", server.getInetAddress().getHostAddress(),
+                server.getLocalPort());
+        while (true) {
+            final Socket socket = server.accept();
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        agent.serve(socket);
+                    } catch (IOException error) {
+                        System.err.println("Connection failed: " + error.getMessage());
+                    }
+                }
+            }, "remote-agent");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * The service constructor.
+     * @param table The learned table or <tt>null</tt> to take random actions
+     */
+    public RemoteAgent(QTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Answers the requests of a connection until it is closed.
+     * @param socket The connected socket
+     * @throws IOException When the client does not talk the protocol
+     */
+    public void serve(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataInputStream input = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+        try {
+            if (input.readInt() != RemoteCampaign.MAGIC ||
+                    input.readInt() != RemoteCampaign.VERSION) {
+                throw new IOException("The client does not talk the protocol.");
+            }
+            int width = input.readInt();
+            int height = input.readInt();
+            int batchSize = input.readInt();
+            if (table != null && (table.getWidth() != width || table.getHeight() != height)) {
+                throw new IOException("The table was learned at another board size.");
+            }
+            output.writeInt(RemoteCampaign.MAGIC);
+            output.writeInt(RemoteCampaign.VERSION);
+            output.flush();
+
+            Random random = new Random(width * 31L + height);
+            byte[] actions = new byte[batchSize];
+            QLearningAgent[] agents = new QLearningAgent[batchSize];
+            while (true) {
+                int batch;
+                try {
+                    batch = input.readInt();
+                } catch (EOFException end) {
+                    return;
+                }
+                int count = input.readInt();
+                if (count > actions.length) {
+                    throw new IOException("The batch is larger than announced: " + count);
+                }
+                for (int i = 0; i < count; i++) {
+                    int game = input.readInt();
+                    int tile = input.readInt();
+                    int direction = input.readByte();
+                    int perceptions = input.readByte();
+                    int arrows = input.readByte();
+                    int flags = input.readByte();
+                    boolean gold = (flags & RemoteCampaign.GOLD) != 0;
+                    long state = QLearningAgent.getState(tile, direction, perceptions, arrows,
+                            gold);
+                    if (table == null) {
+                        actions[i] = (byte) random.nextInt(ACTIONS);
+                        continue;
+                    }
+                    if (game < 0) throw new IOException("Unknown game: " + game);
+                    if (game >= agents.length) {
+                        agents = Arrays.copyOf(agents, Math.max(agents.length * 2, game + 1));
+                    }
+                    if (agents[game] == null) {
+                        agents[game] = new QLearningAgent(table, random.nextLong());
+                    } else if ((flags & RemoteCampaign.NEW_EPISODE) != 0) {
+                        agents[game].reset();
+                    }
+                    actions[i] = (byte) agents[game].getAction(state);
+                }
+                output.writeInt(batch);
+                output.writeInt(count);
+                output.write(actions, 0, count);
+                output.flush();
+            }
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package trials;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import wumpus.Environment.Action;
+import wumpus.Layout;
+import wumpus.Player;
+import wumpus.Solvability;
+import wumpus.Solvability.Label;
+import wumpus.Solver;
+import wumpus.World;
+
+/**
+ * Plays a campaign with an agent that runs at another process, such as a model served by some
+ * other language, talking a compact binary protocol over a loopback socket. The games are not
+ * played by threads: each one is a world stepped by the answers of the agent, and a single
+ * thread keeps thousands of them going at a non-blocking channel.
+ * <p>
+ * The games are split in batches. Every request carries the observations of all the running
+ * games of a batch and its response the actions of all of them, so a round trip serves a whole
+ * batch, and every batch has its request in flight while the others are being answered or
+ * stepped. A game that ends starts the next episode of the campaign at the same place.
+ * <p>
+ * All the numbers are big endian. The client opens with <tt>MAGIC VERSION WIDTH HEIGHT
+ * BATCH</tt> as ints and the agent answers <tt>MAGIC VERSION</tt>. Then each request is
+ * <tt>int batch, int count</tt> followed by <tt>count</tt> observations of 12 bytes:
+ * <tt>int game, int tile, byte direction, byte perceptions, byte arrows, byte flags</tt>, the
+ * flags tell the player has the gold and the observation starts a new episode. Each response
+ * is <tt>int batch, int count</tt> followed by <tt>count</tt> action ordinals of one byte, at the
+ * order of the observations.
+ * <p>
+ * The buffers are flipped and moved through {@link Buffer}, since the {@link ByteBuffer}
+ * overrides of those methods only exist from Java 9 on.
+ * <pre>
+ *     RemoteCampaign PORT BATCH IN_FLIGHT NAME WIDTH HEIGHT EPISODES SEED [OPTION=VALUE...]
+ *     RemoteCampaign 47100 256 4 remote 4 4 1000000 42
+ * </pre>
+ */
+public class RemoteCampaign {
+    public static final int MAGIC = 0x57524D54;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final int OBSERVATION_SIZE = 12;
+    public static final int GOLD = 1;
+    public static final int NEW_EPISODE = 2;
+
+    private static final String DEFAULT_REPORT_FOLDER = "./target/trial-reports";
+    private static final Action[] ACTIONS = Action.values();
+
+    private final Campaign campaign;
+    private final int batchSize;
+    private final int inFlight;
+
+    // The games, batch after batch
+    private final World[] worlds;
+    private final long[] episodes;
+    private final boolean[] running;
+    private final boolean[] fresh;
+    private final Label[] labels;
+    private final int[] distances;
+    private final int[] optimal;
+    private final int[] sent;
+
+    private Solvability classifier;
+    private Solver solver;
+    private long nextEpisode = 0;
+    private long roundTrips = 0;
+    private long decisions = 0;
+    private final Statistics statistics = new Statistics();
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        int batchSize = Integer.parseInt(args[1]);
+        int inFlight = Integer.parseInt(args[2]);
+        RemoteCampaign remote = new RemoteCampaign(Campaign.fromArguments(args, 3), batchSize,
+                inFlight);
+
+        File folder = new File(DEFAULT_REPORT_FOLDER);
+        if (!folder.exists()) folder.mkdirs();
+        File report = new File(folder, remote.campaign.getAgentName() + "-remote.csv");
+
+        long executionTime = System.currentTimeMillis();
+        SocketChannel channel = SocketChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        Writer writer = new BufferedWriter(new FileWriter(report));
+        Statistics statistics;
+        try {
+            writer.append(Campaign.REPORT_HEADER);
+            statistics = remote.run(channel, writer);
+        } finally {
+            writer.close();
+            channel.close();
+        }
+        executionTime = System.currentTimeMillis() - executionTime;
+
+        System.out.println(statistics.render());
+        System.out.format("%d decisions in %d round trips, %.1f games per round trip, " +
+                "%.0f decisions/s.%n", remote.getDecisions(), remote.getRoundTrips(),
+                (double) remote.getDecisions() / Math.max(1, remote.getRoundTrips()),
+                remote.getDecisions() * 1000.0 / Math.max(1, executionTime));
+        System.out.format("Finished in %dms.%n", executionTime);
+        System.out.format("Trial report at: %s%n", report.getPath());
+    }
+
+    /**
+     * The remote campaign constructor.
+     * @param campaign The campaign, its agent name only names the report
+     * @param batchSize The number of games of each batch
+     * @param inFlight The number of batches, each one with a request in flight
+     * @throws InterruptedException
+     */
+    public RemoteCampaign(Campaign campaign, int batchSize, int inFlight)
+            throws InterruptedException {
+        this.campaign = campaign;
+        this.batchSize = batchSize;
+        this.inFlight = inFlight;
+        int games = batchSize * inFlight;
+        worlds = new World[games];
+        for (int i = 0; i < games; i++) {
+            worlds[i] = campaign.createWorld();
+        }
+        episodes = new long[games];
+        running = new boolean[games];
+        fresh = new boolean[games];
+        labels = new Label[games];
+        distances = new int[games];
+        optimal = new int[games];
+        sent = new int[inFlight];
+    }
+
+    /**
+     * Returns the number of requests answered so far.
+     * @return The round trips count
+     */
+    public long getRoundTrips() { return roundTrips; }
+
+    /**
+     * Returns the number of actions received so far.
+     * @return The decisions count
+     */
+    public long getDecisions() { return decisions; }
+
+    /**
+     * Plays all the episodes with the agent at the other end of a channel.
+     * @param channel The connected channel
+     * @param report The report writer, the lines are written in the order the episodes end
+     * @return The statistics of the campaign
+     * @throws IOException When the agent breaks the protocol
+     * @throws InterruptedException
+     */
+    public Statistics run(SocketChannel channel, Writer report) throws IOException,
+            InterruptedException {
+        classifier = campaign.createClassifier();
+        solver = campaign.isRegret() ? campaign.createSolver() : null;
+        handshake(channel);
+
+        ByteBuffer output = ByteBuffer.allocateDirect(
+                inFlight * (HEADER_SIZE + batchSize * OBSERVATION_SIZE));
+        ByteBuffer input = ByteBuffer.allocateDirect(inFlight * (HEADER_SIZE + batchSize));
+        output.order(ByteOrder.BIG_ENDIAN);
+        input.order(ByteOrder.BIG_ENDIAN);
+
+        int active = 0;
+        for (int batch = 0; batch < inFlight; batch++) {
+            for (int game = batch * batchSize; game < (batch + 1) * batchSize; game++) {
+                running[game] = begin(game);
+            }
+            if (request(batch, output)) active++;
+        }
+
+        channel.configureBlocking(false);
+        Selector selector = Selector.open();
+        try {
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            while (active > 0) {
+                // Send as much of the pending requests as the socket takes
+                ((Buffer) output).flip();
+                channel.write(output);
+                key.interestOps(output.hasRemaining() ?
+                        SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                output.compact();
+                selector.select();
+                selector.selectedKeys().clear();
+
+                if (channel.read(input) < 0) {
+                    throw new IOException("The agent has closed the connection.");
+                }
+                ((Buffer) input).flip();
+                while (input.remaining() >= HEADER_SIZE) {
+                    int batch = input.getInt(input.position());
+                    int count = input.getInt(input.position() + 4);
+                    if (batch < 0 || batch >= inFlight || count != sent[batch]) {
+                        throw new IOException("Unexpected response of batch " + batch);
+                    }
+                    if (input.remaining() < HEADER_SIZE + count) break;
+                    ((Buffer) input).position(input.position() + HEADER_SIZE);
+                    roundTrips++;
+                    step(batch, input, report);
+                    if (!request(batch, output)) active--;
+                }
+                input.compact();
+            }
+        } finally {
+            selector.close();
+        }
+        return statistics;
+    }
+
+    /**
+     * Exchanges the protocol versions and the board size, blocking.
+     * @param channel The connected channel
+     * @throws IOException When the agent does not talk the protocol
+     */
+    private void handshake(SocketChannel channel) throws IOException {
+        ByteBuffer hello = ByteBuffer.allocate(20);
+        hello.putInt(MAGIC).putInt(VERSION).putInt(campaign.getWidth())
+                .putInt(campaign.getHeight()).putInt(batchSize);
+        ((Buffer) hello).flip();
+        while (hello.hasRemaining()) channel.write(hello);
+
+        ByteBuffer answer = ByteBuffer.allocate(8);
+        while (answer.hasRemaining()) {
+            if (channel.read(answer) < 0) {
+                throw new IOException("The agent has closed the connection.");
+            }
+        }
+        ((Buffer) answer).flip();
+        if (answer.getInt() != MAGIC || answer.getInt() != VERSION) {
+            throw new IOException("The agent does not talk the protocol version " + VERSION);
+        }
+    }
+
+    /**
+     * Steps the running games of a batch with the actions of a response, starting the next
+     * episodes at the games that end.
+     * @param batch The batch index
+     * @param input The buffer at the actions of the response
+     * @param report The report writer
+     * @throws IOException When an action is unknown
+     * @throws InterruptedException
+     */
+    private void step(int batch, ByteBuffer input, Writer report) throws IOException,
+            InterruptedException {
+        for (int game = batch * batchSize; game < (batch + 1) * batchSize; game++) {
+            if (!running[game]) continue;
+            int action = input.get();
+            if (action < 0 || action >= ACTIONS.length) {
+                throw new IOException("Unknown action: " + action);
+            }
+            decisions++;
+            World world = worlds[game];
+            world.step(ACTIONS[action]);
+            if (world.getStatus() == World.RUNNING) continue;
+            finish(game, report);
+            running[game] = begin(game);
+        }
+    }
+
+    /**
+     * Writes the request of a batch with the observations of its running games.
+     * @param batch The batch index
+     * @param output The requests buffer
+     * @return <tt>false</tt> when the batch has no game left and nothing was written
+     */
+    private boolean request(int batch, ByteBuffer output) {
+        int count = 0;
+        for (int game = batch * batchSize; game < (batch + 1) * batchSize; game++) {
+            if (running[game]) count++;
+        }
+        sent[batch] = count;
+        if (count == 0) return false;
+
+        output.putInt(batch).putInt(count);
+        int width = campaign.getWidth();
+        for (int game = batch * batchSize; game < (batch + 1) * batchSize; game++) {
+            if (!running[game]) continue;
+            Player player = worlds[game].getPlayer();
+            int flags = (player.hasGold() ? GOLD : 0) | (fresh[game] ? NEW_EPISODE : 0);
+            fresh[game] = false;
+            output.putInt(game);
+            output.putInt(player.getY() * width + player.getX());
+            output.put((byte) player.getDirection().ordinal());
+            output.put((byte) player.getPerceptionBits());
+            output.put((byte) player.getArrows());
+            output.put((byte) flags);
+        }
+        return true;
+    }
+
+    /**
+     * Starts the next episode of the campaign at a game.
+     * @param game The game index
+     * @return <tt>false</tt> when all the episodes have been started
+     * @throws InterruptedException
+     */
+    private boolean begin(int game) throws InterruptedException {
+        if (nextEpisode >= campaign.getEpisodes()) return false;
+        long episode = nextEpisode++;
+        World world = worlds[game];
+        Layout layout = campaign.generate(world, classifier, episode);
+        optimal[game] = campaign.solve(world, solver, classifier, layout);
+        labels[game] = classifier.getLabel();
+        distances[game] = classifier.getDistance();
+        world.reset(layout);
+        episodes[game] = episode;
+        fresh[game] = true;
+        return true;
+    }
+
+    /**
+     * Adds the outcome of a game that has ended and writes its report line.
+     * @param game The game index
+     * @param report The report writer
+     * @throws IOException
+     */
+    private void finish(int game, Writer report) throws IOException {
+        World world = worlds[game];
+        Player player = world.getPlayer();
+        int score = player.getScore();
+        int steps = player.getActions().size();
+        statistics.add(world.getResult(), score, steps);
+        Campaign.appendRow(report, episodes[game], world.getResult(), score, steps,
+                labels[game], distances[game], optimal[game]);
+    }
+}
@@ -0,0 +1,276 @@
+package trials;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays a long campaign that survives the death of its process. The episodes are played in
+ * checkpoints of many blocks at parallel, the report lines of a checkpoint are appended in order
+ * and synced to the disk at once, and then the checkpoint file is replaced atomically with the
+ * next episode, the report length and the statistics so far. The episodes are seeded by their
+ * index, so the next episode is all the random state there is.
+ * <p>
+ * A campaign started again with a checkpoint of the same arguments cuts the report back to the
+ * length of the checkpoint, dropping the lines of a checkpoint that did not finish, and goes on
+ * from its next episode. The final report and statistics are the same as the ones of a run that
+ * was never stopped.
+ * <pre>
+ *     Resumable CHECKPOINT AGENT WIDTH HEIGHT EPISODES SEED [OPTION=VALUE...]
+ *     Resumable 1000000 HeuristicAgent 4 4 100000000 42
+ * </pre>
+ */
+public class Resumable {
+    private static final String DEFAULT_REPORT_FOLDER = "./target/trial-reports";
+    private static final int DEFAULT_BLOCK = 1000;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Campaign campaign;
+    private final File report;
+    private final File checkpoint;
+    private final long interval;
+    private int block = DEFAULT_BLOCK;
+
+    private Statistics statistics;
+    private long next;
+    private long length;
+    private long resumed = -1;
+
+    public static void main(String[] args) throws Exception {
+        long interval = Long.parseLong(args[0]);
+        Campaign campaign = Campaign.fromArguments(args, 1);
+
+        File folder = new File(DEFAULT_REPORT_FOLDER);
+        if (!folder.exists()) folder.mkdirs();
+        File report = new File(folder, campaign.getAgentName() + "-resumable.csv");
+        Resumable resumable = new Resumable(campaign, report, interval);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        long executionTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Statistics statistics;
+        try {
+            statistics = resumable.run(executor);
+        } finally {
+            executor.shutdown();
+        }
+        executionTime = System.currentTimeMillis() - executionTime;
+
+        System.out.println(statistics.render());
+        if (resumable.getResumed() >= 0) {
+            System.out.format("Resumed from episode %d.%n", resumable.getResumed());
+        }
+        System.out.format("Finished in %dms.%n", executionTime);
+        System.out.format("Trial report at: %s%n", report.getPath());
+    }
+
+    /**
+     * The resumable campaign constructor.
+     * @param campaign The campaign to play
+     * @param report The report file, the checkpoint is kept next to it
+     * @param interval The number of episodes between the checkpoints
+     */
+    public Resumable(Campaign campaign, File report, long interval) {
+        this.campaign = campaign;
+        this.report = report;
+        this.checkpoint = getCheckpointFile(report);
+        this.interval = interval;
+    }
+
+    /**
+     * Returns the checkpoint file of a report.
+     * @param report The report file
+     * @return The checkpoint properties file
+     */
+    public static File getCheckpointFile(File report) {
+        return new File(report.getPath() + ".checkpoint");
+    }
+
+    /**
+     * Sets the number of episodes of each parallel task.
+     * @param value The number of episodes
+     */
+    public void setBlock(int value) {
+        block = value;
+    }
+
+    /**
+     * Returns the episode the campaign was resumed from.
+     * @return The episode index or -1 if it was started from the beginning
+     */
+    public long getResumed() {
+        return resumed;
+    }
+
+    /**
+     * Plays the episodes after the last checkpoint, checkpointing as it goes. The statistics of
+     * the whole campaign are saved next to the report at the end.
+     * @param executor The executor to play the blocks
+     * @return The statistics of the whole campaign
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException When some episode fails
+     */
+    public Statistics run(ExecutorService executor) throws IOException, InterruptedException,
+            ExecutionException {
+        if (checkpoint.exists()) {
+            resume();
+        } else {
+            start();
+        }
+
+        FileOutputStream output = new FileOutputStream(report, true);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output), BUFFER_SIZE);
+        try {
+            while (next < campaign.getEpisodes()) {
+                long end = Math.min(next + interval, campaign.getEpisodes());
+                play(executor, next, end, writer);
+                // The lines must be at the disk before the checkpoint counts them
+                writer.flush();
+                output.getFD().sync();
+                next = end;
+                length = output.getChannel().position();
+                save();
+            }
+        } finally {
+            writer.close();
+        }
+        statistics.write(new File(report.getPath() + ".properties"));
+        return statistics;
+    }
+
+    /**
+     * Plays the episodes of a checkpoint in blocks at parallel and appends their report lines
+     * in order.
+     * @param executor The executor to play the blocks
+     * @param from The first episode, inclusive
+     * @param to The last episode, exclusive
+     * @param writer The report writer
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException When some episode fails
+     */
+    private void play(ExecutorService executor, long from, long to, Writer writer)
+            throws IOException, InterruptedException, ExecutionException {
+        final List<StringWriter> lines = new ArrayList<StringWriter>();
+        List<Future<Statistics>> tasks = new ArrayList<Future<Statistics>>();
+        for (long start = from; start < to; start += block) {
+            final long first = start;
+            final long last = Math.min(start + block, to);
+            final StringWriter buffer = new StringWriter();
+            lines.add(buffer);
+            tasks.add(executor.submit(new Callable<Statistics>() {
+                public Statistics call() throws Exception {
+                    return campaign.run(first, last, buffer);
+                }
+            }));
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            statistics.merge(tasks.get(i).get());
+            writer.append(lines.get(i).getBuffer());
+            lines.set(i, null);
+        }
+    }
+
+    /**
+     * Starts the campaign from the beginning, with a report that only has the header.
+     * @throws IOException
+     */
+    private void start() throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(report));
+        try {
+            writer.append(campaign.getReportHeader());
+        } finally {
+            writer.close();
+        }
+        statistics = new Statistics();
+        next = 0;
+        length = report.length();
+        save();
+    }
+
+    /**
+     * Loads the last checkpoint and cuts the report back to its length.
+     * @throws IOException When the checkpoint is of another campaign or the report is shorter
+     */
+    private void resume() throws IOException {
+        Properties properties = new Properties();
+        InputStream input = new FileInputStream(checkpoint);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        if (!getArguments().equals(properties.getProperty("arguments"))) {
+            throw new IOException("The checkpoint is of another campaign: " + checkpoint);
+        }
+        next = Long.parseLong(properties.getProperty("next"));
+        length = Long.parseLong(properties.getProperty("length"));
+        statistics = Statistics.load(properties, "statistics.");
+
+        RandomAccessFile file = new RandomAccessFile(report, "rw");
+        try {
+            if (file.length() < length) {
+                throw new IOException("The report is shorter than its checkpoint: " + report);
+            }
+            // Drop the lines of the checkpoint that did not finish
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+        resumed = next;
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file, syncs it and renames it over the last one.
+     * @throws IOException
+     */
+    private void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("arguments", getArguments());
+        properties.setProperty("next", Long.toString(next));
+        properties.setProperty("length", Long.toString(length));
+        statistics.store(properties, "statistics.");
+
+        File temp = new File(checkpoint.getPath() + ".tmp");
+        FileOutputStream output = new FileOutputStream(temp);
+        try {
+            properties.store(output, "Resumable campaign checkpoint");
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        Files.move(temp.toPath(), checkpoint.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Returns the campaign arguments, that identify the campaign of a checkpoint.
+     * @return The arguments line
+     */
+    private String getArguments() {
+        StringBuilder line = new StringBuilder();
+        for (String argument : campaign.toArguments()) {
+            if (line.length() > 0) line.append(' ');
+            line.append(argument);
+        }
+        return line.toString();
+    }
+}
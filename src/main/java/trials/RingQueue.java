@@ -0,0 +1,146 @@
+package trials;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free queue for many producers and many consumers, based on the array queue of
+ * Dmitry Vyukov. Every slot has a sequence number that tells if it is ready to be written or
+ * read, so producers and consumers only compete for the queue positions with a compare-and-set.
+ * The blocking operations back off until there is room or an element, which gives backpressure to
+ * the stage that is running ahead.
+ * @param <E> The elements type
+ */
+public class RingQueue<E> {
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = 50000;
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The queue constructor.
+     * @param capacity The minimum capacity, rounded up to a power of two
+     */
+    public RingQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        elements = new AtomicReferenceArray<E>(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element if there is room.
+     * @param element The element
+     * @return <tt>true</tt> if the element was added
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element if there is one.
+     * @return The element or <tt>null</tt> if the queue is empty
+     */
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = elements.get(index);
+                    elements.set(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Adds an element, waiting until there is room.
+     * @param element The element
+     * @throws InterruptedException
+     */
+    public void put(E element) throws InterruptedException {
+        for (int idle = 0; !offer(element); idle++) {
+            backOff(idle);
+        }
+    }
+
+    /**
+     * Removes the oldest element, waiting until there is one.
+     * @return The element
+     * @throws InterruptedException
+     */
+    public E take() throws InterruptedException {
+        E element;
+        for (int idle = 0; (element = poll()) == null; idle++) {
+            backOff(idle);
+        }
+        return element;
+    }
+
+    /**
+     * Returns the number of elements at the queue, it may be outdated as soon as it returns.
+     * @return The elements count
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    /**
+     * Returns the maximum number of elements.
+     * @return The capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Waits a little longer at each failed attempt, spinning first, then yielding and parking.
+     * @param idle The number of failed attempts
+     * @throws InterruptedException
+     */
+    private static void backOff(int idle) throws InterruptedException {
+        if (idle < SPINS) return;
+        if (idle < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+}
@@ -0,0 +1,209 @@
+package trials;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Splits the episodes of a campaign into shards and plays each one at a separate local process
+ * running a {@link ShardWorker}. The processes share nothing but the files they write, failed
+ * shards are retried on their own, and the shards are merged in order so the final report is the
+ * same no matter how many processes were used. That holds for agents whose decisions only depend
+ * on their seed and perceptions: an agent that breaks ties by the iteration order of a hash
+ * table may decide differently at each process.
+ * <pre>
+ *     ShardCoordinator SHARDS PROCESSES AGENT WIDTH HEIGHT EPISODES SEED [OPTION=VALUE...]
+ * </pre>
+ */
+public class ShardCoordinator {
+    private static final String DEFAULT_REPORT_FOLDER = "./target/trial-reports";
+    private static final int DEFAULT_RETRIES = 3;
+    private static final long POLL_INTERVAL = 50;
+
+    private final Campaign campaign;
+    private final int shards;
+    private final int processes;
+    private int retries = DEFAULT_RETRIES;
+
+    public static void main(String[] args) throws Exception {
+        int shards = Integer.parseInt(args[0]);
+        int processes = Integer.parseInt(args[1]);
+        Campaign campaign = Campaign.fromArguments(args, 2);
+
+        File folder = new File(DEFAULT_REPORT_FOLDER);
+        if (!folder.exists()) folder.mkdirs();
+        File report = new File(folder, campaign.getAgentName() + "-sharded.csv");
+
+        long executionTime = System.currentTimeMillis();
+        Statistics statistics = new ShardCoordinator(campaign, shards, processes).run(report);
+        executionTime = System.currentTimeMillis() - executionTime;
+
+        System.out.println(statistics.render());
+        System.out.format("Trial report at: %s%n", report.getPath());
+        System.out.format("Finished in %dms.%n", executionTime);
+    }
+
+    /**
+     * The coordinator constructor.
+     * @param campaign The campaign to play
+     * @param shards The number of shards to split the episodes
+     * @param processes The maximum number of worker processes running at the same time
+     */
+    public ShardCoordinator(Campaign campaign, int shards, int processes) {
+        this.campaign = campaign;
+        this.shards = shards;
+        this.processes = processes;
+    }
+
+    /**
+     * Sets how many times a failed shard is launched again before giving up.
+     * @param value The number of retries
+     */
+    public void setRetries(int value) {
+        retries = value;
+    }
+
+    /**
+     * Returns the first episode of a shard.
+     * @param shard The shard index
+     * @return The episode index
+     */
+    public long getShardStart(int shard) {
+        return campaign.getEpisodes() * shard / shards;
+    }
+
+    /**
+     * Plays all the shards and merges them into a single report.
+     * @param report The merged report file
+     * @return The merged statistics
+     * @throws IOException When some shard keeps failing
+     * @throws InterruptedException
+     */
+    public Statistics run(File report) throws IOException, InterruptedException {
+        File folder = new File(report.getPath() + ".shards");
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Cannot create the shards folder " + folder);
+        }
+
+        LinkedList<Integer> pending = new LinkedList<Integer>();
+        for (int shard = 0; shard < shards; shard++) {
+            pending.add(shard);
+        }
+
+        int[] attempts = new int[shards];
+        Process[] running = new Process[shards];
+        int active = 0;
+
+        while (!pending.isEmpty() || active > 0) {
+            // Launch the workers up to the limit
+            while (!pending.isEmpty() && active < processes) {
+                int shard = pending.poll();
+                attempts[shard]++;
+                running[shard] = launch(folder, shard);
+                active++;
+            }
+            Thread.sleep(POLL_INTERVAL);
+            // Collect the finished workers
+            for (int shard = 0; shard < shards; shard++) {
+                Process process = running[shard];
+                if (process == null || process.isAlive()) continue;
+
+                running[shard] = null;
+                active--;
+                File statistics = ShardWorker.getStatisticsFile(getOutput(folder, shard));
+                if (process.exitValue() == 0 && statistics.exists()) continue;
+
+                if (attempts[shard] > retries) {
+                    for (Process other : running) {
+                        if (other != null) other.destroy();
+                    }
+                    throw new IOException(String.format("Shard %d failed after %d attempts, " +
+                            "see %s.log", shard, attempts[shard], getOutput(folder, shard)));
+                }
+                pending.add(shard);
+            }
+        }
+
+        return merge(folder, report);
+    }
+
+    /**
+     * Starts the worker process of a shard.
+     * @param folder The shards folder
+     * @param shard The shard index
+     * @return The process instance
+     * @throws IOException
+     */
+    private Process launch(File folder, int shard) throws IOException {
+        String output = getOutput(folder, shard);
+        // Discard the outputs of an earlier attempt
+        ShardWorker.getReportFile(output).delete();
+        ShardWorker.getStatisticsFile(output).delete();
+
+        List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        command.add(Long.toString(getShardStart(shard)));
+        command.add(Long.toString(getShardStart(shard + 1)));
+        command.add(output);
+        command.addAll(campaign.toArguments());
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(new File(output + ".log"));
+        return builder.start();
+    }
+
+    /**
+     * Concatenates the shard reports in order and adds up their statistics.
+     * @param folder The shards folder
+     * @param report The merged report file
+     * @return The merged statistics
+     * @throws IOException
+     */
+    private Statistics merge(File folder, File report) throws IOException {
+        Statistics statistics = new Statistics();
+        Writer writer = new BufferedWriter(new FileWriter(report));
+        try {
+            writer.append(campaign.getReportHeader());
+            for (int shard = 0; shard < shards; shard++) {
+                String output = getOutput(folder, shard);
+                statistics.merge(Statistics.read(ShardWorker.getStatisticsFile(output)));
+
+                BufferedReader reader = new BufferedReader(
+                        new FileReader(ShardWorker.getReportFile(output)));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        writer.append(line).append('\n');
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        statistics.write(new File(report.getPath() + ".properties"));
+        return statistics;
+    }
+
+    /**
+     * Returns the output path of a shard.
+     * @param folder The shards folder
+     * @param shard The shard index
+     * @return The path without extension
+     */
+    private String getOutput(File folder, int shard) {
+        return new File(folder, String.format("shard-%05d", shard)).getPath();
+    }
+}
@@ -0,0 +1,63 @@
+package trials;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Plays a single shard of a campaign at its own process. The shard report and statistics are
+ * written to temporary files and renamed at the end, so the coordinator only ever sees complete
+ * outputs.
+ * <pre>
+ *     ShardWorker FROM TO OUTPUT AGENT WIDTH HEIGHT EPISODES SEED [OPTION=VALUE...]
+ * </pre>
+ */
+public class ShardWorker {
+    public static void main(String[] args) {
+        try {
+            long from = Long.parseLong(args[0]);
+            long to = Long.parseLong(args[1]);
+            String output = args[2];
+            Campaign campaign = Campaign.fromArguments(args, 3);
+
+            File report = getReportFile(output);
+            File statistics = getStatisticsFile(output);
+            File reportTemp = new File(report.getPath() + ".tmp");
+            File statisticsTemp = new File(statistics.getPath() + ".tmp");
+
+            Writer writer = new BufferedWriter(new FileWriter(reportTemp));
+            try {
+                campaign.run(from, to, writer).write(statisticsTemp);
+            } finally {
+                writer.close();
+            }
+            // Publish the report before the statistics, the coordinator waits for the later
+            if (!reportTemp.renameTo(report) || !statisticsTemp.renameTo(statistics)) {
+                throw new IOException("Cannot publish the shard output at " + output);
+            }
+        } catch (Exception error) {
+            error.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the report file of a shard output.
+     * @param output The shard output path
+     * @return The CSV report file
+     */
+    public static File getReportFile(String output) {
+        return new File(output + ".csv");
+    }
+
+    /**
+     * Returns the statistics file of a shard output.
+     * @param output The shard output path
+     * @return The properties file
+     */
+    public static File getStatisticsFile(String output) {
+        return new File(output + ".properties");
+    }
+}
@@ -0,0 +1,189 @@
+package trials;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import wumpus.Environment.Result;
+
+/**
+ * The aggregated outcome of a set of episodes. All the figures are kept as integer sums so the
+ * statistics of many shards can be merged in any order and still give the exact same result.
+ */
+public class Statistics {
+    private long episodes = 0;
+    private long steps = 0;
+    private long scoreSum = 0;
+    private long scoreSquares = 0;
+    private long scoreMin = Long.MAX_VALUE;
+    private long scoreMax = Long.MIN_VALUE;
+    private final long[] results = new long[Result.values().length];
+
+    /**
+     * Adds the outcome of a single episode.
+     * @param result The episode result
+     * @param score The final score
+     * @param steps The number of steps taken
+     */
+    public void add(Result result, int score, int steps) {
+        episodes++;
+        this.steps += steps;
+        scoreSum += score;
+        scoreSquares += (long) score * score;
+        scoreMin = Math.min(scoreMin, score);
+        scoreMax = Math.max(scoreMax, score);
+        results[result.ordinal()]++;
+    }
+
+    /**
+     * Adds all the episodes of other statistics into this one.
+     * @param other The statistics to merge
+     */
+    public void merge(Statistics other) {
+        episodes += other.episodes;
+        steps += other.steps;
+        scoreSum += other.scoreSum;
+        scoreSquares += other.scoreSquares;
+        scoreMin = Math.min(scoreMin, other.scoreMin);
+        scoreMax = Math.max(scoreMax, other.scoreMax);
+        for (int i = 0; i < results.length; i++) {
+            results[i] += other.results[i];
+        }
+    }
+
+    /**
+     * Returns the number of episodes.
+     * @return The episodes count
+     */
+    public long getEpisodes() { return episodes; }
+
+    /**
+     * Returns the total of steps taken in all episodes.
+     * @return The steps count
+     */
+    public long getSteps() { return steps; }
+
+    /**
+     * Returns how many episodes ended with the given result.
+     * @param result The result
+     * @return The episodes count
+     */
+    public long getCount(Result result) { return results[result.ordinal()]; }
+
+    /**
+     * Returns the fraction of episodes won.
+     * @return The win rate between 0 and 1
+     */
+    public double getWinRate() {
+        return episodes == 0 ? 0 : (double) getCount(Result.WIN) / episodes;
+    }
+
+    /**
+     * Returns the average score.
+     * @return The mean score
+     */
+    public double getMeanScore() {
+        return episodes == 0 ? 0 : (double) scoreSum / episodes;
+    }
+
+    /**
+     * Returns the sample standard deviation of the score.
+     * @return The score deviation
+     */
+    public double getScoreDeviation() {
+        if (episodes < 2) return 0;
+        double mean = getMeanScore();
+        double variance = (scoreSquares - mean * scoreSum) / (episodes - 1);
+        return Math.sqrt(Math.max(variance, 0));
+    }
+
+    /**
+     * Saves the statistics to a properties file.
+     * @param file The destination file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        Properties properties = new Properties();
+        store(properties, "");
+        OutputStream output = new FileOutputStream(file);
+        try {
+            properties.store(output, null);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Loads the statistics from a properties file.
+     * @param file The source file
+     * @return The statistics instance
+     * @throws IOException
+     */
+    public static Statistics read(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream input = new FileInputStream(file);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        return load(properties, "");
+    }
+
+    /**
+     * Puts the statistics into properties, to be saved along with other values.
+     * @param properties The properties instance
+     * @param prefix The prefix of the property names
+     */
+    void store(Properties properties, String prefix) {
+        properties.setProperty(prefix + "episodes", Long.toString(episodes));
+        properties.setProperty(prefix + "steps", Long.toString(steps));
+        properties.setProperty(prefix + "score.sum", Long.toString(scoreSum));
+        properties.setProperty(prefix + "score.squares", Long.toString(scoreSquares));
+        properties.setProperty(prefix + "score.min", Long.toString(scoreMin));
+        properties.setProperty(prefix + "score.max", Long.toString(scoreMax));
+        for (Result result : Result.values()) {
+            properties.setProperty(prefix + "result." + result, Long.toString(getCount(result)));
+        }
+    }
+
+    /**
+     * Takes the statistics from properties.
+     * @param properties The properties instance
+     * @param prefix The prefix of the property names
+     * @return The statistics instance
+     */
+    static Statistics load(Properties properties, String prefix) {
+        Statistics statistics = new Statistics();
+        statistics.episodes = Long.parseLong(properties.getProperty(prefix + "episodes"));
+        statistics.steps = Long.parseLong(properties.getProperty(prefix + "steps"));
+        statistics.scoreSum = Long.parseLong(properties.getProperty(prefix + "score.sum"));
+        statistics.scoreSquares = Long.parseLong(properties.getProperty(prefix + "score.squares"));
+        statistics.scoreMin = Long.parseLong(properties.getProperty(prefix + "score.min"));
+        statistics.scoreMax = Long.parseLong(properties.getProperty(prefix + "score.max"));
+        for (Result result : Result.values()) {
+            statistics.results[result.ordinal()] =
+                    Long.parseLong(properties.getProperty(prefix + "result." + result, "0"));
+        }
+        return statistics;
+    }
+
+    /**
+     * Renders the statistics as an ASCII table.
+     * @return The statistics table
+     */
+    public String render() {
+        return String.format(
+                "+--------------------------------------------------+%n" +
+                "| Episodes   | Win rate | Mean score | Std dev    |%n" +
+                "| ---------- | -------- | ---------- | ---------- |%n" +
+                "| %10d | %7.2f%% | %10.2f | %10.2f |%n" +
+                "+--------------------------------------------------+%n",
+                episodes, getWinRate() * 100, getMeanScore(), getScoreDeviation()
+            );
+    }
+}
@@ -0,0 +1,270 @@
+package trials;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays every agent at every board configuration of a matrix of board sizes and hazard
+ * densities, a campaign for each cell. The episodes of each cell are split in ranges that are
+ * forked at a work-stealing pool, so the threads that finish the fast cells steal the ranges of
+ * the slow ones (large boards or expensive agents) instead of waiting idle at the end.
+ * <p>
+ * The density is the fraction of blocks with a pit. The results matrix has the win rate, mean
+ * score and episodes per second of each cell, the last one measured as the time the threads
+ * spent playing that cell so it does not depend on what the other cells were doing.
+ * <pre>
+ *     Tournament AGENTS SIZES DENSITIES EPISODES SEED [THREADS]
+ *     Tournament HeuristicAgent,RandomAgent 4x4,8x8 0.1,0.2 10000 42
+ * </pre>
+ */
+public class Tournament {
+    private static final String DEFAULT_REPORT_FOLDER = "./target/trial-reports";
+    private static final String REPORT_HEADER =
+            "Agent,Width,Height,Density,Pits,Episodes,WinRate,MeanScore,ScoreDeviation," +
+            "EpisodesPerSecond\n";
+    private static final int DEFAULT_GRAIN = 256;
+
+    /**
+     * A single agent and board configuration of the tournament.
+     */
+    public static class Cell {
+        private final Campaign campaign;
+        private final double density;
+        private final AtomicLong nanos = new AtomicLong();
+        private Statistics statistics;
+
+        Cell(Campaign campaign, double density) {
+            this.campaign = campaign;
+            this.density = density;
+        }
+
+        /**
+         * Returns the campaign played at this cell.
+         * @return The campaign instance
+         */
+        public Campaign getCampaign() { return campaign; }
+
+        /**
+         * Returns the fraction of blocks with a pit.
+         * @return The density between 0 and 1
+         */
+        public double getDensity() { return density; }
+
+        /**
+         * Returns the statistics of the cell once the tournament has finished.
+         * @return The statistics or <tt>null</tt> if not played yet
+         */
+        public Statistics getStatistics() { return statistics; }
+
+        /**
+         * Returns the episodes played per second by a single thread.
+         * @return The throughput
+         */
+        public double getThroughput() {
+            long elapsed = nanos.get();
+            return elapsed <= 0 || statistics == null ? 0 :
+                    statistics.getEpisodes() * 1e9 / elapsed;
+        }
+    }
+
+    /**
+     * Plays a range of episodes of a cell, splitting it in halves while it is larger than the
+     * grain.
+     */
+    private static class Range extends RecursiveTask<Statistics> {
+        private static final long serialVersionUID = 1L;
+
+        private final Cell cell;
+        private final long from;
+        private final long to;
+        private final int grain;
+
+        Range(Cell cell, long from, long to, int grain) {
+            this.cell = cell;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        protected Statistics compute() {
+            if (to - from > grain) {
+                long middle = (from + to) >>> 1;
+                Range left = new Range(cell, from, middle, grain);
+                left.fork();
+                Statistics statistics = new Range(cell, middle, to, grain).compute();
+                statistics.merge(left.join());
+                return statistics;
+            }
+            long start = System.nanoTime();
+            try {
+                return cell.campaign.run(from, to, null);
+            } catch (IOException error) {
+                throw new IllegalStateException(error);
+            } catch (InterruptedException error) {
+                throw new IllegalArgumentException("Cannot build the boards of " +
+                        cell.campaign.getAgentName() + " at density " + cell.density, error);
+            } finally {
+                cell.nanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private final List<Cell> cells = new ArrayList<Cell>();
+    private int grain = DEFAULT_GRAIN;
+
+    public static void main(String[] args) throws Exception {
+        String[] agents = args[0].split(",");
+        String[] sizes = args[1].split(",");
+        String[] densities = args[2].split(",");
+        long episodes = Long.parseLong(args[3]);
+        long seed = Long.parseLong(args[4]);
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) :
+                Runtime.getRuntime().availableProcessors();
+
+        Tournament tournament = new Tournament();
+        for (String agent : agents) {
+            for (String size : sizes) {
+                int separator = size.indexOf('x');
+                int width = Integer.parseInt(size.substring(0, separator));
+                int height = Integer.parseInt(size.substring(separator + 1));
+                for (String density : densities) {
+                    tournament.add(agent, width, height, Double.parseDouble(density), episodes,
+                            seed);
+                }
+            }
+        }
+
+        long executionTime = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            tournament.run(pool);
+        } finally {
+            pool.shutdown();
+        }
+        executionTime = System.currentTimeMillis() - executionTime;
+
+        File folder = new File(DEFAULT_REPORT_FOLDER);
+        if (!folder.exists()) folder.mkdirs();
+        File report = new File(folder, "tournament.csv");
+        Writer writer = new BufferedWriter(new FileWriter(report));
+        try {
+            tournament.write(writer);
+        } finally {
+            writer.close();
+        }
+        System.out.println(tournament.render());
+        System.out.format("Finished in %dms with %d threads.%n", executionTime, threads);
+        System.out.format("Tournament report at: %s%n", report.getPath());
+    }
+
+    /**
+     * Sets the number of episodes below which a range is played without splitting it further.
+     * @param value The number of episodes
+     */
+    public void setGrain(int value) {
+        grain = value;
+    }
+
+    /**
+     * Adds a cell to the tournament, all the cells of an agent share the same campaign seed so
+     * the agents are compared on the same sequence of episodes.
+     * @param agentName The agent name, as known by {@link Agents}
+     * @param width The board width
+     * @param height The board height
+     * @param density The fraction of blocks with a pit
+     * @param episodes The number of episodes
+     * @param seed The campaign seed
+     * @return The cell instance
+     */
+    public Cell add(String agentName, int width, int height, double density, long episodes,
+                    long seed) {
+        Campaign campaign = new Campaign(agentName, width, height, episodes, seed);
+        campaign.setPits((int) Math.round(density * width * height));
+        // The cells measure the agent and the engine, not the regret solver
+        campaign.setRegret(false);
+        Cell cell = new Cell(campaign, density);
+        cells.add(cell);
+        return cell;
+    }
+
+    /**
+     * Returns the cells in the order they were added.
+     * @return The cells list
+     */
+    public List<Cell> getCells() {
+        return cells;
+    }
+
+    /**
+     * Plays every cell at the given pool and waits for all of them.
+     * @param pool The work-stealing pool
+     */
+    public void run(ForkJoinPool pool) {
+        final List<Range> ranges = new ArrayList<Range>();
+        for (Cell cell : cells) {
+            cell.nanos.set(0);
+            ranges.add(new Range(cell, 0, cell.campaign.getEpisodes(), grain));
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            protected Void compute() {
+                ForkJoinTask.invokeAll(ranges);
+                return null;
+            }
+        });
+        for (int i = 0; i < cells.size(); i++) {
+            cells.get(i).statistics = ranges.get(i).join();
+        }
+    }
+
+    /**
+     * Writes one CSV line for each cell.
+     * @param report The report writer
+     * @throws IOException
+     */
+    public void write(Writer report) throws IOException {
+        report.append(REPORT_HEADER);
+        for (Cell cell : cells) {
+            Campaign campaign = cell.campaign;
+            Statistics statistics = cell.statistics;
+            report.append(String.format("%s,%d,%d,%s,%d,%d,%.4f,%.2f,%.2f,%.0f%n",
+                    campaign.getAgentName(), campaign.getWidth(), campaign.getHeight(),
+                    Double.toString(cell.density), campaign.getPits(), statistics.getEpisodes(),
+                    statistics.getWinRate(), statistics.getMeanScore(),
+                    statistics.getScoreDeviation(), cell.getThroughput()));
+        }
+    }
+
+    /**
+     * Renders the results matrix as an ASCII table.
+     * @return The results table
+     */
+    public String render() {
+        StringBuilder table = new StringBuilder();
+        String line = "+----------------------------------------------------------------------" +
+                "-----------+%n";
+        table.append(String.format(line));
+        table.append(String.format("| %-20s | %-7s | %-7s | %8s | %10s | %12s |%n",
+                "Agent", "Size", "Density", "Win rate", "Mean score", "Episodes/s"));
+        table.append(String.format("| %-20s | %-7s | %-7s | %8s | %10s | %12s |%n",
+                "--------------------", "-------", "-------", "--------", "----------",
+                "------------"));
+        for (Cell cell : cells) {
+            Campaign campaign = cell.campaign;
+            table.append(String.format("| %-20s | %-7s | %7.2f | %7.2f%% | %10.2f | %,12.0f |%n",
+                    campaign.getAgentName(), campaign.getWidth() + "x" + campaign.getHeight(),
+                    cell.density, cell.statistics.getWinRate() * 100,
+                    cell.statistics.getMeanScore(), cell.getThroughput()));
+        }
+        table.append(String.format(line));
+        return table.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package trials;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import agents.QLearning;
+import agents.QLearningAgent;
+import agents.QTable;
+import wumpus.Environment.Result;
+import wumpus.Player;
+import wumpus.World;
+
+/**
+ * Trains the {@link agents.QLearningAgent} of a board size by self-play and saves the learned
+ * table, to be played by the campaigns as <tt>QLearningAgent</tt>. A single thread trains the
+ * table itself, more threads train copies merged every few thousand episodes. A table saved
+ * before is trained further. The learned table is played greedily at episodes apart from the
+ * training ones before it is saved, so a table that has not learned to win is noticed.
+ * <p>
+ * The options are <tt>pits</tt>, <tt>rate</tt>, <tt>discount</tt>, <tt>exploration</tt>,
+ * <tt>sync</tt>, the episodes between the merges, <tt>evaluation</tt>, the greedy episodes, and
+ * <tt>file</tt>, by default <tt>./target/q-tables/WIDTHxHEIGHT.bin</tt>.
+ * <pre>
+ *     Training WIDTH HEIGHT EPISODES SEED [THREADS] [OPTION=VALUE...]
+ *     Training 4 4 5000000 42 4
+ * </pre>
+ */
+public class Training {
+    private static final String DEFAULT_TABLE_FOLDER = "./target/q-tables";
+    private static final long DEFAULT_EVALUATION = 10000;
+    private static final long EVALUATION_SALT = 0x6A09E667F3BCC909L;
+
+    public static void main(String[] args) throws Exception {
+        int width = Integer.parseInt(args[0]);
+        int height = Integer.parseInt(args[1]);
+        long episodes = Long.parseLong(args[2]);
+        long seed = Long.parseLong(args[3]);
+        int offset = 4;
+        int threads = 1;
+        if (args.length > offset && args[offset].indexOf('=') < 0) {
+            threads = Integer.parseInt(args[offset++]);
+        }
+
+        File file = new File(getDefaultFile(width, height));
+        long evaluation = DEFAULT_EVALUATION;
+        int pits = 0;
+        QLearning learning;
+        for (int i = offset; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid training option: " + args[i]);
+            }
+            String name = args[i].substring(0, separator);
+            String value = args[i].substring(separator + 1);
+            if (name.equals("file")) {
+                file = new File(value);
+            } else if (name.equals("evaluation")) {
+                evaluation = Long.parseLong(value);
+            } else if (name.equals("pits")) {
+                pits = Integer.parseInt(value);
+            }
+        }
+        if (file.exists()) {
+            QTable table = QTable.read(file);
+            if (table.getWidth() != width || table.getHeight() != height) {
+                throw new IllegalArgumentException("The Q-table was learned at another board: " +
+                        file);
+            }
+            learning = new QLearning(table);
+        } else {
+            learning = new QLearning(width, height);
+        }
+        for (int i = offset; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            setOption(learning, args[i].substring(0, separator), args[i].substring(separator + 1));
+        }
+
+        long executionTime = System.currentTimeMillis();
+        if (threads == 1) {
+            learning.train(episodes, seed);
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                learning.train(executor, threads, episodes, seed);
+            } finally {
+                executor.shutdown();
+            }
+        }
+        executionTime = System.currentTimeMillis() - executionTime;
+        Statistics statistics = evaluate(learning.getTable(), pits, evaluation,
+                seed ^ EVALUATION_SALT);
+
+        File folder = file.getAbsoluteFile().getParentFile();
+        if (!folder.exists()) folder.mkdirs();
+        learning.getTable().write(file);
+
+        System.out.format("Trained %d episodes at %d thread(s) in %dms, %.0f episodes/min.%n",
+                episodes, threads, executionTime,
+                episodes * 60000.0 / Math.max(1, executionTime));
+        System.out.format("Learned %d states, saved at: %s (%d bytes)%n",
+                learning.getTable().size(), file.getPath(), file.length());
+        if (statistics.getEpisodes() > 0) {
+            System.out.format("Greedy play of %d episodes: %.2f%% wins, %.2f mean score.%n",
+                    statistics.getEpisodes(), statistics.getWinRate() * 100,
+                    statistics.getMeanScore());
+            if (statistics.getCount(Result.WIN) == 0) {
+                System.out.println("WARNING: the greedy play has not won any episode, the " +
+                        "table has not learned a policy yet.");
+            }
+        }
+    }
+
+    /**
+     * Plays a table greedily at episodes of their own seeds, apart from the training ones.
+     * @param table The learned table
+     * @param pits The number of pits of the boards, zero for the world default
+     * @param episodes The number of episodes
+     * @param seed The seed of the episodes
+     * @return The statistics of the episodes
+     * @throws InterruptedException
+     */
+    public static Statistics evaluate(QTable table, int pits, long episodes, long seed)
+            throws InterruptedException {
+        Statistics statistics = new Statistics();
+        World world = new World(table.getWidth(), table.getHeight());
+        if (pits > 0) world.setPits(pits);
+        Player player = world.getPlayer();
+        for (long episode = 0; episode < episodes; episode++) {
+            long episodeSeed = Campaign.getEpisodeSeed(seed, episode);
+            QLearningAgent agent = new QLearningAgent(table, episodeSeed);
+            agent.setDebug(false);
+            world.setSeed(episodeSeed);
+            world.execute(agent);
+            statistics.add(world.getResult(), player.getScore(), player.getActions().size());
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the default file of the table of a board size.
+     * @param width The board width
+     * @param height The board height
+     * @return The file path
+     */
+    public static String getDefaultFile(int width, int height) {
+        return DEFAULT_TABLE_FOLDER + "/" + width + "x" + height + ".bin";
+    }
+
+    /**
+     * Sets a training option from its text representation.
+     * @param learning The learner instance
+     * @param name The option name
+     * @param value The option value
+     */
+    private static void setOption(QLearning learning, String name, String value) {
+        if (name.equals("pits")) {
+            learning.setPits(Integer.parseInt(value));
+        } else if (name.equals("rate")) {
+            learning.setRate(Float.parseFloat(value));
+        } else if (name.equals("discount")) {
+            learning.setDiscount(Float.parseFloat(value));
+        } else if (name.equals("exploration")) {
+            learning.setExploration(Double.parseDouble(value));
+        } else if (name.equals("sync")) {
+            learning.setSyncInterval(Integer.parseInt(value));
+        } else if (!name.equals("file") && !name.equals("evaluation")) {
+            throw new IllegalArgumentException("Unknown training option: " + name);
+        }
+    }
+}
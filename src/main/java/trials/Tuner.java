@@ -0,0 +1,448 @@
+package trials;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import agents.HeuristicAgent;
+import wumpus.Environment.Result;
+import wumpus.Player;
+import wumpus.World;
+
+/**
+ * Tunes the cost parameters of the {@link HeuristicAgent} by racing a grid of candidates. All the
+ * candidates play the same episodes, block by block and in parallel, and after each block every
+ * candidate is compared with the best one on the episodes played so far: the candidates whose
+ * paired score difference is surely negative are dropped from the race. The bad settings are
+ * dropped after a few blocks, so almost all the episodes are played by the good ones.
+ * <p>
+ * Each parameter is given as a range <tt>NAME=FROM:TO:STEP</tt>, the ones not given keep the agent
+ * defaults. The parameters are <tt>visited</tt>, <tt>return</tt>, <tt>frontier</tt>,
+ * <tt>danger</tt> and <tt>breeze</tt>. The episodes are played under the same world settings as
+ * the campaigns, <tt>cycles=true</tt> stops the looping episodes early to race faster, at the cost
+ * of scoring them far above the timeout they get at the campaigns.
+ * <pre>
+ *     Tuner WIDTH HEIGHT EPISODES SEED [NAME=FROM:TO:STEP...] [cycles=true]
+ *     Tuner 4 4 20000 42 visited=0:10:1 frontier=0:30:2 danger=20:200:20
+ * </pre>
+ */
+public class Tuner {
+    private static final String DEFAULT_REPORT_FOLDER = "./target/trial-reports";
+    private static final String[] PARAMETERS = {"visited", "return", "frontier", "danger", "breeze"};
+    private static final double[] DEFAULTS = {5, 5, 10, 100, 0.5};
+    private static final int DEFAULT_BLOCK = 100;
+    private static final double DEFAULT_CONFIDENCE = 3.0;
+
+    /**
+     * A set of parameters and its outcome at the race.
+     */
+    public static class Candidate {
+        private final double[] values;
+        private int[] scores = new int[DEFAULT_BLOCK];
+        private int episodes = 0;
+        private long scoreSum = 0;
+        private long wins = 0;
+        private int eliminated = -1;
+
+        Candidate(double[] values) {
+            this.values = values;
+        }
+
+        /**
+         * Creates an agent with this candidate parameters.
+         * @param width The board width
+         * @param height The board height
+         * @return The agent instance
+         */
+        public HeuristicAgent createAgent(int width, int height) {
+            HeuristicAgent agent = new HeuristicAgent(width, height);
+            agent.setDebug(false);
+            agent.setVisitedCost((int) values[0]);
+            agent.setReturnCost((int) values[1]);
+            agent.setFrontierCost((int) values[2]);
+            agent.setDangerCost((int) values[3]);
+            agent.setBreezeDanger(values[4]);
+            return agent;
+        }
+
+        /**
+         * Returns the number of episodes played before leaving the race.
+         * @return The episodes count
+         */
+        public int getEpisodes() { return episodes; }
+
+        /**
+         * Returns the mean score of the episodes played.
+         * @return The mean score
+         */
+        public double getMeanScore() {
+            return episodes == 0 ? 0 : (double) scoreSum / episodes;
+        }
+
+        /**
+         * Returns the fraction of episodes won.
+         * @return The win rate between 0 and 1
+         */
+        public double getWinRate() {
+            return episodes == 0 ? 0 : (double) wins / episodes;
+        }
+
+        /**
+         * Returns weather the candidate is still at the race.
+         * @return <tt>true</tt> if it was not dropped
+         */
+        public boolean isAlive() { return eliminated < 0; }
+
+        /**
+         * Returns the parameters as <tt>name=value</tt> pairs.
+         * @return The parameters text
+         */
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < PARAMETERS.length; i++) {
+                if (i > 0) text.append(' ');
+                text.append(PARAMETERS[i]).append('=');
+                if (values[i] == Math.rint(values[i])) text.append((long) values[i]);
+                else text.append(values[i]);
+            }
+            return text.toString();
+        }
+
+        /**
+         * Keeps the score of an episode.
+         * @param episode The episode index
+         * @param score The final score
+         * @param won Weather the episode was won
+         */
+        private void add(int episode, int score, boolean won) {
+            if (episode >= scores.length) {
+                scores = Arrays.copyOf(scores, Math.max(scores.length * 2, episode + 1));
+            }
+            scores[episode] = score;
+            scoreSum += score;
+            if (won) wins++;
+            episodes++;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int maxEpisodes;
+    private final long seed;
+    private int block = DEFAULT_BLOCK;
+    private double confidence = DEFAULT_CONFIDENCE;
+    private boolean cycleDetection = false;
+    private long played = 0;
+
+    private final List<Candidate> candidates = new ArrayList<Candidate>();
+
+    public static void main(String[] args) throws Exception {
+        Tuner tuner = new Tuner(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), Long.parseLong(args[3]));
+
+        // Parse the parameter ranges
+        double[][] ranges = new double[PARAMETERS.length][];
+        for (int i = 4; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            if (args[i].substring(0, separator).equals("cycles")) {
+                tuner.setCycleDetection(Boolean.parseBoolean(args[i].substring(separator + 1)));
+                continue;
+            }
+            int parameter = Arrays.asList(PARAMETERS).indexOf(args[i].substring(0, separator));
+            if (parameter < 0) {
+                throw new IllegalArgumentException("Unknown parameter: " + args[i]);
+            }
+            String[] range = args[i].substring(separator + 1).split(":");
+            ranges[parameter] = new double[]{Double.parseDouble(range[0]),
+                    Double.parseDouble(range[1]), Double.parseDouble(range[2])};
+        }
+        tuner.addGrid(ranges);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        long executionTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            tuner.run(executor);
+        } finally {
+            executor.shutdown();
+        }
+        executionTime = System.currentTimeMillis() - executionTime;
+
+        File folder = new File(DEFAULT_REPORT_FOLDER);
+        if (!folder.exists()) folder.mkdirs();
+        File report = new File(folder, "tuner.csv");
+        Writer writer = new BufferedWriter(new FileWriter(report));
+        try {
+            tuner.write(writer);
+        } finally {
+            writer.close();
+        }
+        System.out.println(tuner.render(10));
+        System.out.format("Played %,d episodes of %,d for the full grid in %dms.%n",
+                tuner.getPlayed(), (long) tuner.candidates.size() * tuner.maxEpisodes,
+                executionTime);
+        System.out.format("Tuner report at: %s%n", report.getPath());
+    }
+
+    /**
+     * The tuner constructor.
+     * @param width The board width
+     * @param height The board height
+     * @param maxEpisodes The number of episodes of the candidates that reach the end of the race
+     * @param seed The seed shared by all the candidates
+     */
+    public Tuner(int width, int height, int maxEpisodes, long seed) {
+        this.width = width;
+        this.height = height;
+        this.maxEpisodes = maxEpisodes;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of episodes played by every candidate between two comparisons.
+     * @param value The number of episodes
+     */
+    public void setBlock(int value) {
+        block = value;
+    }
+
+    /**
+     * Sets how many standard errors the mean difference to the best candidate must be below
+     * zero to drop a candidate, larger values drop less good candidates by chance.
+     * @param value The number of standard errors
+     */
+    public void setConfidence(double value) {
+        confidence = value;
+    }
+
+    /**
+     * Sets weather to stop the episodes at the first repeated state. The race is faster, but the
+     * candidates that loop are not penalised as the timeout of the campaigns does.
+     * @param value <tt>true</tt> to stop the cycles
+     */
+    public void setCycleDetection(boolean value) {
+        cycleDetection = value;
+    }
+
+    /**
+     * Adds a candidate for every combination of the parameter ranges.
+     * @param ranges The {from, to, step} of each parameter or <tt>null</tt> to keep the default
+     */
+    public void addGrid(double[][] ranges) {
+        addGrid(ranges, 0, DEFAULTS.clone());
+    }
+
+    /**
+     * Adds a candidate with the given parameters.
+     * @param values The value of each parameter
+     * @return The candidate instance
+     */
+    public Candidate add(double[] values) {
+        Candidate candidate = new Candidate(values.clone());
+        candidates.add(candidate);
+        return candidate;
+    }
+
+    /**
+     * Returns all the candidates.
+     * @return The candidates list
+     */
+    public List<Candidate> getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Returns the number of episodes played by all the candidates.
+     * @return The episodes count
+     */
+    public long getPlayed() {
+        return played;
+    }
+
+    /**
+     * Races the candidates until a single one is left or the survivors have played all the
+     * episodes.
+     * @param executor The executor to play the candidates in parallel
+     * @return The best candidate
+     * @throws InterruptedException
+     * @throws ExecutionException When some episode fails
+     */
+    public Candidate run(ExecutorService executor) throws InterruptedException,
+            ExecutionException {
+        List<Candidate> alive = new ArrayList<Candidate>(candidates);
+        for (int from = 0; from < maxEpisodes && alive.size() > 1; from += block) {
+            final int start = from;
+            final int end = Math.min(from + block, maxEpisodes);
+            // Every candidate plays the same block of episodes
+            List<Future<Void>> tasks = new ArrayList<Future<Void>>();
+            for (final Candidate candidate : alive) {
+                tasks.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        play(candidate, start, end);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> task : tasks) {
+                task.get();
+            }
+            played += (long) alive.size() * (end - start);
+            race(alive, end);
+        }
+        return getBest(alive);
+    }
+
+    /**
+     * Writes one CSV line for each candidate, the best ones first.
+     * @param report The report writer
+     * @throws IOException
+     */
+    public void write(Writer report) throws IOException {
+        report.append("Parameters,Episodes,WinRate,MeanScore,Alive\n");
+        for (Candidate candidate : getRanking()) {
+            report.append(String.format("%s,%d,%.4f,%.2f,%s%n", candidate, candidate.episodes,
+                    candidate.getWinRate(), candidate.getMeanScore(), candidate.isAlive()));
+        }
+    }
+
+    /**
+     * Renders the best candidates as an ASCII table.
+     * @param limit The maximum number of candidates
+     * @return The candidates table
+     */
+    public String render(int limit) {
+        StringBuilder table = new StringBuilder();
+        String line = "+------------------------------------------------------------------------" +
+                "-----------------------+%n";
+        table.append(String.format(line));
+        table.append(String.format("| %-50s | %8s | %8s | %10s | %5s |%n",
+                "Parameters", "Episodes", "Win rate", "Mean score", "Alive"));
+        table.append(String.format("| %-50s | %8s | %8s | %10s | %5s |%n",
+                "--------------------------------------------------", "--------", "--------",
+                "----------", "-----"));
+        List<Candidate> ranking = getRanking();
+        for (Candidate candidate : ranking.subList(0, Math.min(limit, ranking.size()))) {
+            table.append(String.format("| %-50s | %8d | %7.2f%% | %10.2f | %5s |%n",
+                    candidate, candidate.episodes, candidate.getWinRate() * 100,
+                    candidate.getMeanScore(), candidate.isAlive() ? "yes" : "no"));
+        }
+        table.append(String.format(line));
+        return table.toString();
+    }
+
+    /**
+     * Plays a block of episodes of a candidate.
+     * @param candidate The candidate
+     * @param from The first episode, inclusive
+     * @param to The last episode, exclusive
+     * @throws InterruptedException
+     */
+    private void play(Candidate candidate, int from, int to) throws InterruptedException {
+        World world = new World(width, height);
+        world.setCycleDetection(cycleDetection);
+        Player player = world.getPlayer();
+        for (int episode = from; episode < to; episode++) {
+            world.setSeed(Campaign.getEpisodeSeed(seed, episode));
+            world.execute(candidate.createAgent(width, height));
+            candidate.add(episode, player.getScore(), world.getResult() == Result.WIN);
+        }
+    }
+
+    /**
+     * Drops the candidates whose paired score difference to the best one is surely negative.
+     * @param alive The candidates still at the race
+     * @param episodes The number of episodes played by each one
+     */
+    private void race(List<Candidate> alive, int episodes) {
+        Candidate best = getBest(alive);
+        for (int i = alive.size() - 1; i >= 0; i--) {
+            Candidate candidate = alive.get(i);
+            if (candidate == best) continue;
+            // Paired difference on the same episodes
+            double sum = 0, squares = 0;
+            for (int episode = 0; episode < episodes; episode++) {
+                double difference = candidate.scores[episode] - best.scores[episode];
+                sum += difference;
+                squares += difference * difference;
+            }
+            double mean = sum / episodes;
+            double variance = episodes > 1 ?
+                    Math.max(0, (squares - sum * mean) / (episodes - 1)) : 0;
+            double error = Math.sqrt(variance / episodes);
+            if (mean + confidence * error < 0) {
+                candidate.eliminated = episodes;
+                // Only the survivors scores are compared again
+                candidate.scores = null;
+                alive.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the candidate with the highest mean score.
+     * @param list The candidates list
+     * @return The best candidate or <tt>null</tt> if the list is empty
+     */
+    private static Candidate getBest(List<Candidate> list) {
+        Candidate best = null;
+        for (Candidate candidate : list) {
+            if (best == null || candidate.scoreSum * (long) best.episodes >
+                    best.scoreSum * (long) candidate.episodes) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the candidates sorted by the episodes played and then by the mean score, so the
+     * survivors come first.
+     * @return The sorted candidates
+     */
+    private List<Candidate> getRanking() {
+        List<Candidate> ranking = new ArrayList<Candidate>(candidates);
+        Collections.sort(ranking, new Comparator<Candidate>() {
+            public int compare(Candidate a, Candidate b) {
+                if (a.episodes != b.episodes) return a.episodes > b.episodes ? -1 : 1;
+                return Double.compare(b.getMeanScore(), a.getMeanScore());
+            }
+        });
+        return ranking;
+    }
+
+    /**
+     * Adds a candidate for every combination of the remaining parameter ranges.
+     * @param ranges The {from, to, step} of each parameter or <tt>null</tt> to keep the default
+     * @param parameter The next parameter to vary
+     * @param values The values of the parameters already chosen
+     */
+    private void addGrid(double[][] ranges, int parameter, double[] values) {
+        if (parameter == values.length) {
+            add(values);
+            return;
+        }
+        double[] range = ranges[parameter];
+        if (range == null) {
+            addGrid(ranges, parameter + 1, values);
+            return;
+        }
+        int count = (int) Math.floor((range[1] - range[0]) / range[2] + 1e-9) + 1;
+        for (int i = 0; i < count; i++) {
+            values[parameter] = range[0] + i * range[2];
+            addGrid(ranges, parameter + 1, values);
+        }
+        values[parameter] = range[0];
+    }
+}
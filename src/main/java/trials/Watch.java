@@ -0,0 +1,54 @@
+package trials;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+
+import wumpus.Spectator;
+
+/**
+ * Plays a campaign at a {@link Pipeline} while a {@link Spectator} shows the games of one of the
+ * simulation threads, at most a number of frames per second. The other threads are not watched
+ * and the watched one is only slowed down when a frame is taken, so the campaign runs at nearly
+ * its full speed.
+ * <pre>
+ *     Watch FPS THREADS AGENT WIDTH HEIGHT EPISODES SEED [OPTION=VALUE...]
+ *     Watch 10 4 HeuristicAgent 8 8 1000000 42
+ * </pre>
+ */
+public class Watch {
+    private static final String DEFAULT_REPORT_FOLDER = "./target/trial-reports";
+
+    public static void main(String[] args) throws Exception {
+        int fps = Integer.parseInt(args[0]);
+        int threads = Integer.parseInt(args[1]);
+        Campaign campaign = Campaign.fromArguments(args, 2);
+        Spectator spectator = new Spectator();
+        campaign.setSpectator(spectator);
+
+        Pipeline pipeline = new Pipeline(campaign, 1, threads, 1);
+        // The stages progress would be drawn over the frames
+        pipeline.setMonitorInterval(0);
+
+        File folder = new File(DEFAULT_REPORT_FOLDER);
+        if (!folder.exists()) folder.mkdirs();
+        File report = new File(folder, campaign.getAgentName() + "-watch.csv");
+
+        long executionTime = System.currentTimeMillis();
+        Writer writer = new BufferedWriter(new FileWriter(report));
+        Statistics statistics;
+        spectator.start(System.out, fps);
+        try {
+            statistics = pipeline.run(writer);
+        } finally {
+            spectator.stop();
+            writer.close();
+        }
+        executionTime = System.currentTimeMillis() - executionTime;
+
+        System.out.println(statistics.render());
+        System.out.format("Finished in %dms.%n", executionTime);
+        System.out.format("Trial report at: %s%n", report.getPath());
+    }
+}
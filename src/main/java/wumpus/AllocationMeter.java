@@ -0,0 +1,204 @@
+package wumpus;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated at the heap by the world and its agent, with the allocation
+ * counter the JVM keeps for every thread. A world with a meter charges the allocations of each
+ * game to the reset of the board, the engine steps and the agent decisions, so the hot path can
+ * be kept free of allocations.
+ * <p>
+ * A meter must only be used by the thread that plays its world. Reading the counter may allocate
+ * a few bytes itself, that cost is measured once and subtracted from every reading.
+ */
+public class AllocationMeter {
+    private static final com.sun.management.ThreadMXBean THREADS = getThreads();
+    private static final int CALIBRATION_ROUNDS = 1000;
+
+    private final long thread = Thread.currentThread().getId();
+    private final long overhead;
+
+    // The current episode
+    private long reset = 0;
+    private long engine = 0;
+    private long agent = 0;
+
+    // All the episodes
+    private long episodes = 0;
+    private long steps = 0;
+    private long resetTotal = 0;
+    private long engineTotal = 0;
+    private long agentTotal = 0;
+
+    /**
+     * Creates a meter of the current thread.
+     * @throws UnsupportedOperationException When the JVM does not count the allocations
+     */
+    public AllocationMeter() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("The JVM does not count the allocations.");
+        }
+        // The least cost of two readings in a row
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long start = THREADS.getThreadAllocatedBytes(thread);
+            least = Math.min(least, THREADS.getThreadAllocatedBytes(thread) - start);
+        }
+        overhead = least;
+    }
+
+    /**
+     * Returns weather the allocations of the threads can be measured.
+     * @return <tt>true</tt> if supported
+     */
+    public static boolean isSupported() {
+        return THREADS != null && THREADS.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * Returns the bytes allocated by the thread of this meter so far.
+     * @return The allocated bytes
+     */
+    public long now() {
+        return THREADS.getThreadAllocatedBytes(thread);
+    }
+
+    /**
+     * Starts a new episode, clearing its counters.
+     * @return A reading at the start
+     */
+    public long start() {
+        reset = engine = agent = 0;
+        return now();
+    }
+
+    /**
+     * Finishes the current episode, adding its counters to the totals.
+     * @param steps The number of steps of the episode
+     */
+    public void finish(int steps) {
+        episodes++;
+        this.steps += steps;
+        resetTotal += reset;
+        engineTotal += engine;
+        agentTotal += agent;
+    }
+
+    /**
+     * Charges the allocations since a reading to the board reset.
+     * @param since The reading at the start
+     * @return A new reading
+     */
+    long addReset(long since) {
+        long now = now();
+        reset += Math.max(0, now - since - overhead);
+        return now;
+    }
+
+    /**
+     * Charges the allocations since a reading to the engine.
+     * @param since The reading at the start
+     * @return A new reading
+     */
+    long addEngine(long since) {
+        long now = now();
+        engine += Math.max(0, now - since - overhead);
+        return now;
+    }
+
+    /**
+     * Charges the allocations since a reading to the agent.
+     * @param since The reading at the start
+     * @return A new reading
+     */
+    long addAgent(long since) {
+        long now = now();
+        agent += Math.max(0, now - since - overhead);
+        return now;
+    }
+
+    /**
+     * Returns the bytes allocated by the reset of the current episode.
+     * @return The allocated bytes
+     */
+    public long getReset() { return reset; }
+
+    /**
+     * Returns the bytes allocated by the engine at the current episode.
+     * @return The allocated bytes
+     */
+    public long getEngine() { return engine; }
+
+    /**
+     * Returns the bytes allocated by the agent at the current episode.
+     * @return The allocated bytes
+     */
+    public long getAgent() { return agent; }
+
+    /**
+     * Returns the number of finished episodes.
+     * @return The episodes count
+     */
+    public long getEpisodes() { return episodes; }
+
+    /**
+     * Returns the mean bytes allocated by the reset of the board of every episode.
+     * @return The bytes per episode
+     */
+    public double getResetPerEpisode() {
+        return episodes == 0 ? 0 : (double) resetTotal / episodes;
+    }
+
+    /**
+     * Returns the mean bytes allocated by the engine at every step.
+     * @return The bytes per step
+     */
+    public double getEnginePerStep() {
+        return steps == 0 ? 0 : (double) engineTotal / steps;
+    }
+
+    /**
+     * Returns the mean bytes allocated by the agent at every step.
+     * @return The bytes per step
+     */
+    public double getAgentPerStep() {
+        return steps == 0 ? 0 : (double) agentTotal / steps;
+    }
+
+    /**
+     * Forgets the totals of all the episodes, to measure only after a warm-up.
+     */
+    public void clear() {
+        episodes = steps = resetTotal = engineTotal = agentTotal = 0;
+    }
+
+    /**
+     * Adds the totals of another meter into this one.
+     * @param other The meter to merge
+     */
+    public void merge(AllocationMeter other) {
+        episodes += other.episodes;
+        steps += other.steps;
+        resetTotal += other.resetTotal;
+        engineTotal += other.engineTotal;
+        agentTotal += other.agentTotal;
+    }
+
+    /**
+     * Returns the threads bean of the JVM with the allocation counters enabled.
+     * @return The bean or <tt>null</tt> if the JVM does not have one
+     */
+    private static com.sun.management.ThreadMXBean getThreads() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+            }
+            return threads;
+        } catch (LinkageError error) {
+            return null;
+        }
+    }
+}
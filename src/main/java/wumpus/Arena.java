@@ -0,0 +1,202 @@
+package wumpus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import wumpus.Environment.Element;
+
+/**
+ * A board shared by many hunters that play at the same time, each one driven by its own agent at
+ * its own thread. Every hunter has its own {@link World} and {@link Player} over the same
+ * {@link AtomicBoard}, so the perceptions and the score of a hunter are only touched by its
+ * thread, while the gold and the Wumpus are taken from the board with a compare-and-set of the
+ * block: hunters at different blocks never contend and only one of them gets the same gold or
+ * hears the same scream.
+ */
+public class Arena {
+    private static final int RANDOM_MAX_TRIES = 1000;
+
+    private final AtomicBoard board;
+    private final World[] worlds;
+    private final boolean[] reserved;
+    private final Random random = new Random();
+
+    private int gold = 1;
+    private int pits = 2;
+    private int wumpus = 1;
+
+    /**
+     * Creates a new arena with given dimensions.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     * @param hunters The number of hunters
+     */
+    public Arena(int width, int height, int hunters) {
+        board = new AtomicBoard(width, height);
+        reserved = new boolean[width * height];
+        worlds = new World[hunters];
+        for (int i = 0; i < hunters; i++) {
+            worlds[i] = new World(board);
+            worlds[i].setShared(true);
+        }
+    }
+
+    /**
+     * Sets the seed of the random generator used to place the hunters, dangers and gold.
+     * @param seed The random seed
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Set the number of gold on the board.
+     * @param value
+     */
+    public void setGold(int value) {
+        gold = value;
+    }
+
+    /**
+     * Set the number of pits on the board.
+     * @param value
+     */
+    public void setPits(int value) {
+        pits = value;
+    }
+
+    /**
+     * Set the number of Wumpus on the board.
+     * @param value
+     */
+    public void setWumpus(int value) {
+        wumpus = value;
+    }
+
+    /**
+     * Sets the maximus steps of every hunter.
+     * @param value
+     */
+    public void setMaxSteps(int value) {
+        for (World world : worlds) {
+            world.setMaxSteps(value);
+        }
+    }
+
+    /**
+     * Returns the number of hunters.
+     * @return The hunters count
+     */
+    public int getHunters() {
+        return worlds.length;
+    }
+
+    /**
+     * Returns the world of a single hunter, with its player and outcome.
+     * @param hunter The hunter index
+     * @return The world instance
+     */
+    public World getWorld(int hunter) {
+        return worlds[hunter];
+    }
+
+    /**
+     * Returns the shared board.
+     * @return The board instance
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Resets the board, choosing a start position for each hunter and placing the dangers and
+     * the gold away from them.
+     * @throws InterruptedException When reaches too many tries
+     */
+    public void reset() throws InterruptedException {
+        board.clear();
+        for (int i = 0; i < reserved.length; i++) {
+            reserved[i] = false;
+        }
+        // Every hunter starts at a distinct block with safe neighbors
+        for (World world : worlds) {
+            int start = getRandom();
+            reserved[start] = true;
+            world.setStartPosition(start);
+        }
+        for (World world : worlds) {
+            Tile start = world.getPosition(world.getStartPosition());
+            for (int side = 0; side < 4; side++) {
+                int neighbor = start.getNeighbor(side);
+                if (neighbor > -1) reserved[neighbor] = true;
+            }
+        }
+        setRandom(Element.WUMPUS, wumpus);
+        setRandom(Element.PIT, pits);
+        setRandom(Element.GOLD, gold);
+    }
+
+    /**
+     * Plays a game with every hunter at the same board, the hunters are executed as tasks of the
+     * given executor and this method returns when all of them have finished.
+     * @param agents The agent of each hunter
+     * @param executor The executor to run the hunters
+     * @throws InterruptedException
+     * @throws ExecutionException When some agent fails
+     */
+    public void execute(Agent[] agents, ExecutorService executor) throws InterruptedException,
+            ExecutionException {
+        if (agents.length != worlds.length) {
+            throw new IllegalArgumentException("Expected one agent for each hunter.");
+        }
+        reset();
+
+        List<Future<Void>> hunters = new ArrayList<Future<Void>>();
+        for (int i = 0; i < worlds.length; i++) {
+            final World world = worlds[i];
+            final Agent agent = agents[i];
+            hunters.add(executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    world.execute(agent);
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> hunter : hunters) {
+            hunter.get();
+        }
+    }
+
+    /**
+     * Places the elements at random blocks away from the hunters.
+     * @param element The element to be place
+     * @param times How many items to be placed
+     * @throws InterruptedException When reaches too many tries
+     */
+    private void setRandom(Element element, int times) throws InterruptedException {
+        for (int i = 0; i < times; i++) {
+            int index = getRandom();
+            board.add(index, Environment.getBit(element));
+            reserved[index] = true;
+        }
+    }
+
+    /**
+     * Returns a random block that is not reserved.
+     * @return The block linear position
+     * @throws InterruptedException When reaches too many tries
+     */
+    private int getRandom() throws InterruptedException {
+        for (int tries = 0; tries < RANDOM_MAX_TRIES; tries++) {
+            int index = random.nextInt(reserved.length);
+            if (!reserved[index]) return index;
+        }
+        throw new InterruptedException("Cannot set a random position for element after " +
+                "many tries, increase the arena dimensions.");
+    }
+}
@@ -0,0 +1,41 @@
+package wumpus;
+
+import java.util.Arrays;
+
+/**
+ * The board stored at an array at the heap, for a single player.
+ */
+public class ArrayBoard extends Board {
+    private final int[] cells;
+    private final Tile[] tiles;
+
+    /**
+     * The board constructor.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     */
+    public ArrayBoard(int width, int height) {
+        super(width, height);
+        cells = new int[width * height];
+        tiles = new Tile[width * height];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new Tile(this, i);
+        }
+    }
+
+    public int get(int index) {
+        return cells[index];
+    }
+
+    public void set(int index, int elements) {
+        cells[index] = elements;
+    }
+
+    public void clear() {
+        Arrays.fill(cells, 0);
+    }
+
+    public Tile getTile(int index) {
+        return tiles[index];
+    }
+}
@@ -0,0 +1,56 @@
+package wumpus;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The board shared by many players playing at the same time at different threads. Each block is
+ * updated with a compare-and-set of its own mask, so players at different blocks never contend
+ * and only one player can take the same gold or kill the same Wumpus.
+ */
+public class AtomicBoard extends Board {
+    private final AtomicIntegerArray cells;
+    private final Tile[] tiles;
+
+    /**
+     * The board constructor.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     */
+    public AtomicBoard(int width, int height) {
+        super(width, height);
+        cells = new AtomicIntegerArray(width * height);
+        // The views are created upfront, so they are shared by the players of every thread
+        tiles = new Tile[width * height];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new Tile(this, i);
+        }
+    }
+
+    public int get(int index) {
+        return cells.get(index);
+    }
+
+    public void set(int index, int elements) {
+        cells.set(index, elements);
+    }
+
+    public void add(int index, int elements) {
+        int current;
+        do {
+            current = cells.get(index);
+        } while (!cells.compareAndSet(index, current, current | elements));
+    }
+
+    public boolean remove(int index, int elements) {
+        int current;
+        do {
+            current = cells.get(index);
+            if ((current & elements) == 0) return false;
+        } while (!cells.compareAndSet(index, current, current & ~elements));
+        return true;
+    }
+
+    public Tile getTile(int index) {
+        return tiles[index];
+    }
+}
@@ -0,0 +1,104 @@
+package wumpus;
+
+/**
+ * The storage of the elements at each block of the game board. Every block keeps a mask of
+ * {@link Environment#getBit(Environment.Element)} bits, and the {@link Tile} instances are views
+ * over it.
+ */
+public abstract class Board {
+    private static final int TILE_CACHE_SIZE = 1 << 12;
+
+    protected final int width;
+    protected final int height;
+
+    // Views of the blocks visited lately, at the slot of their position
+    private Tile[] tileCache;
+
+    /**
+     * The board constructor.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     */
+    protected Board(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns the board width.
+     * @return The width
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Returns the board height.
+     * @return The height
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Returns the elements mask of a block.
+     * @param index The block linear position
+     * @return The elements mask
+     */
+    public abstract int get(int index);
+
+    /**
+     * Replaces the elements mask of a block.
+     * @param index The block linear position
+     * @param elements The elements mask
+     */
+    public abstract void set(int index, int elements);
+
+    /**
+     * Adds elements to a block.
+     * @param index The block linear position
+     * @param elements The elements mask to add
+     */
+    public void add(int index, int elements) {
+        set(index, get(index) | elements);
+    }
+
+    /**
+     * Removes elements from a block.
+     * @param index The block linear position
+     * @param elements The elements mask to remove
+     * @return <tt>true</tt> if some of the elements were at the block
+     */
+    public boolean remove(int index, int elements) {
+        int current = get(index);
+        set(index, current & ~elements);
+        return (current & elements) != 0;
+    }
+
+    /**
+     * Removes all elements from the board.
+     */
+    public void clear() {
+        for (int i = 0; i < width * height; i++) {
+            set(i, 0);
+        }
+    }
+
+    /**
+     * Returns the view of a block. The views of the blocks visited lately are kept at a small
+     * cache, so walking around does not create a view at every step even at boards too large
+     * to keep a view of each block.
+     * @param index The block linear position
+     * @return The tile instance
+     */
+    public Tile getTile(int index) {
+        Tile[] cache = tileCache;
+        if (cache == null) {
+            cache = new Tile[TILE_CACHE_SIZE];
+            tileCache = cache;
+        }
+        int slot = index & (TILE_CACHE_SIZE - 1);
+        Tile tile = cache[slot];
+        if (tile == null || tile.getIndex() != index) {
+            tile = new Tile(this, index);
+            cache[slot] = tile;
+        }
+        return tile;
+    }
+}
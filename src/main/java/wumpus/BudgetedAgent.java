@@ -0,0 +1,220 @@
+package wumpus;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import wumpus.Environment.Action;
+
+/**
+ * Wraps an agent with a time limit for every decision and a CPU time budget for the whole game.
+ * A decision that takes longer than the deadline is discarded and replaced by the fallback, a
+ * fixed action or the choice of a cheap fallback agent, and counted as a violation. Once the
+ * budget is spent the agent is not asked again and the fallback plays the rest of the game.
+ * <p>
+ * The decisions are timed at the world thread, which costs two clock readings per decision, so
+ * fast agents are not slowed down but a stuck agent still holds the thread. Isolated agents
+ * decide at the threads of an executor instead, over a copy of the player that the world does
+ * not change, and an agent that misses the deadline there is abandoned for the rest of the game.
+ * <p>
+ * The fallback agent is only asked at the decisions it takes over, so it writes all the actions
+ * it plans at once and keeps none of them for later, when the player may be somewhere else. A
+ * fallback agent that does not plan should not depend on the decisions it was not asked for.
+ */
+public class BudgetedAgent implements PlanningAgent {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final int MAX_PLAN_LENGTH = 16;
+
+    private final Agent agent;
+    private final long deadline;
+    private final long budget;
+    private Action fallbackAction = Action.NOOP;
+    private Agent fallbackAgent;
+    private ExecutorService executor;
+
+    private final Action[] buffer = new Action[MAX_PLAN_LENGTH];
+    private Player snapshot;
+    private long spent = 0;
+    private boolean abandoned = false;
+    private int violations = 0;
+
+    /**
+     * The budgeted agent constructor.
+     * @param agent The agent to limit
+     * @param deadline The wall clock limit of every decision in nanoseconds, zero for no limit
+     * @param budget The CPU time limit of the game in nanoseconds, zero for no limit
+     */
+    public BudgetedAgent(Agent agent, long deadline, long budget) {
+        this.agent = agent;
+        this.deadline = deadline;
+        this.budget = budget;
+        if (budget > 0 && !THREADS.isCurrentThreadCpuTimeSupported()) {
+            throw new UnsupportedOperationException("The JVM does not measure the CPU time.");
+        }
+    }
+
+    /**
+     * Sets the action taken instead of the agent decisions out of the budget.
+     * @param value The fallback action
+     */
+    public void setFallback(Action value) {
+        fallbackAction = value;
+        fallbackAgent = null;
+    }
+
+    /**
+     * Sets the agent that decides instead of the limited one when it is out of the budget, it
+     * should be a planning agent or one that does not depend on the decisions it was not asked
+     * for.
+     * @param value The fallback agent
+     */
+    public void setFallback(Agent value) {
+        fallbackAgent = value;
+    }
+
+    /**
+     * Sets the executor to decide at other threads, so a stuck agent does not hold the world
+     * thread.
+     * @param value The executor or <tt>null</tt> to decide at the world thread
+     */
+    public void setExecutor(ExecutorService value) {
+        executor = value;
+    }
+
+    /**
+     * Returns the number of decisions replaced by the fallback.
+     * @return The violations count
+     */
+    public int getViolations() {
+        return violations;
+    }
+
+    /**
+     * Returns weather the agent was abandoned for spending its budget or missing a deadline
+     * while isolated.
+     * @return <tt>true</tt> if the fallback plays the rest of the game
+     */
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Returns the limited agent.
+     * @return The agent instance
+     */
+    public Agent getAgent() {
+        return agent;
+    }
+
+    public Action getAction(Player player) {
+        getPlan(player, buffer);
+        return buffer[0];
+    }
+
+    public int getPlan(Player player, Action[] plan) {
+        if (abandoned) return fallback(player, plan);
+        if (executor != null) return isolate(player, plan);
+
+        long start = System.nanoTime();
+        long cpu = budget > 0 ? THREADS.getCurrentThreadCpuTime() : 0;
+        int length = decide(agent, player, plan);
+        long elapsed = System.nanoTime() - start;
+        if (budget > 0) {
+            spent += THREADS.getCurrentThreadCpuTime() - cpu;
+            if (spent > budget) abandoned = true;
+        }
+        if (abandoned || (deadline > 0 && elapsed > deadline)) {
+            violations++;
+            return fallback(player, plan);
+        }
+        return length;
+    }
+
+    public void beforeAction(Player player) {
+        if (!abandoned) agent.beforeAction(player);
+    }
+
+    public void afterAction(Player player) {
+        if (!abandoned) agent.afterAction(player);
+    }
+
+    /**
+     * Asks the agent for a decision at a thread of the executor, waiting at most the deadline.
+     * @param player The player instance
+     * @param plan The buffer to write the actions
+     * @return The number of actions written to the buffer
+     */
+    private int isolate(Player player, Action[] plan) {
+        // The agent reads a copy of the player and writes to its own buffer, it may still be
+        // running after the deadline while the world plays on
+        snapshot = player.copyTo(snapshot);
+        final Player detached = snapshot;
+        final Action[] target = new Action[plan.length];
+        final long[] cpu = new long[1];
+        Future<Integer> task = executor.submit(new Callable<Integer>() {
+            public Integer call() {
+                long start = budget > 0 ? THREADS.getCurrentThreadCpuTime() : 0;
+                int length = decide(agent, detached, target);
+                if (budget > 0) cpu[0] = THREADS.getCurrentThreadCpuTime() - start;
+                return length;
+            }
+        });
+        int length;
+        try {
+            length = deadline > 0 ? task.get(deadline, TimeUnit.NANOSECONDS) : task.get();
+        } catch (TimeoutException error) {
+            task.cancel(true);
+            abandoned = true;
+            violations++;
+            return fallback(player, plan);
+        } catch (InterruptedException error) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            abandoned = true;
+            violations++;
+            return fallback(player, plan);
+        } catch (ExecutionException error) {
+            throw new IllegalStateException("The agent has failed to decide.", error.getCause());
+        }
+        spent += cpu[0];
+        if (budget > 0 && spent > budget) {
+            abandoned = true;
+            violations++;
+            return fallback(player, plan);
+        }
+        if (length > 0 && length <= plan.length) System.arraycopy(target, 0, plan, 0, length);
+        return length;
+    }
+
+    /**
+     * Writes the fallback decision, all the actions planned by a fallback agent at once.
+     * @param player The player instance
+     * @param plan The buffer to write the actions
+     * @return The number of actions written to the buffer
+     */
+    private int fallback(Player player, Action[] plan) {
+        if (fallbackAgent != null) return decide(fallbackAgent, player, plan);
+        plan[0] = fallbackAction;
+        return 1;
+    }
+
+    /**
+     * Asks an agent for its next actions, a single one for the agents that do not plan.
+     * @param agent The agent instance
+     * @param player The player instance
+     * @param plan The buffer to write the actions
+     * @return The number of actions written to the buffer
+     */
+    private static int decide(Agent agent, Player player, Action[] plan) {
+        if (agent instanceof PlanningAgent) {
+            return ((PlanningAgent) agent).getPlan(player, plan);
+        }
+        plan[0] = agent.getAction(player);
+        return 1;
+    }
+}
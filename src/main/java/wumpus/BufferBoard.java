@@ -0,0 +1,205 @@
+package wumpus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The board stored out of the heap, one byte for each block at a direct buffer or at a file
+ * mapped to memory, so the heap used by the board does not depend on its size. A mapped board is
+ * saved as it is changed and can be opened again at once, the file starts with a small header
+ * with the board size.
+ * <p>
+ * The tiles are views created on demand and cached while they are visited. Changes can be recorded from a mark and undone, so a
+ * saved world can be played and restored to its saved state touching only the changed blocks.
+ */
+public class BufferBoard extends Board {
+    private static final int MAGIC = 0x574D5053;
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int CLEAR_CHUNK = 4096;
+    private static final byte[] ZEROS = new byte[CLEAR_CHUNK];
+
+    private final ByteBuffer buffer;
+    // A view of the same blocks with its own position, to clear them in chunks
+    private final ByteBuffer blocks;
+
+    // Changes since the mark
+    private boolean recording = false;
+    private int[] journal = new int[0];
+    private byte[] previous = new byte[0];
+    private int changes = 0;
+
+    /**
+     * Creates a new board at a direct buffer.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     */
+    public BufferBoard(int width, int height) {
+        this(ByteBuffer.allocateDirect(HEADER + getCells(width, height)), width, height);
+        writeHeader();
+    }
+
+    /**
+     * The board constructor.
+     * @param buffer The buffer with the header and the blocks
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     */
+    private BufferBoard(ByteBuffer buffer, int width, int height) {
+        super(width, height);
+        this.buffer = buffer;
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        blocks = buffer.duplicate();
+    }
+
+    /**
+     * Creates a new empty board at a file mapped to memory, replacing the file if it exists.
+     * @param file The board file
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     * @return The board instance
+     * @throws IOException
+     */
+    public static BufferBoard create(File file, int width, int height) throws IOException {
+        long size = HEADER + (long) getCells(width, height);
+        RandomAccessFile stream = new RandomAccessFile(file, "rw");
+        try {
+            stream.setLength(0);
+            stream.setLength(size);
+            BufferBoard board = new BufferBoard(stream.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE, 0, size), width, height);
+            board.writeHeader();
+            return board;
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Opens a board saved at a file, mapping it to memory.
+     * @param file The board file
+     * @return The board instance
+     * @throws IOException When the file is not a board
+     */
+    public static BufferBoard open(File file) throws IOException {
+        RandomAccessFile stream = new RandomAccessFile(file, "rw");
+        try {
+            MappedByteBuffer buffer = stream.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE, 0, stream.length());
+            if (stream.length() < HEADER || buffer.getInt(0) != MAGIC ||
+                    buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a board file: " + file);
+            }
+            int width = buffer.getInt(8);
+            int height = buffer.getInt(12);
+            if (stream.length() != HEADER + (long) getCells(width, height)) {
+                throw new IOException("Truncated board file: " + file);
+            }
+            return new BufferBoard(buffer, width, height);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Writes the changes of a board mapped to a file to the storage.
+     */
+    public void force() {
+        if (buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+
+    /**
+     * Starts recording the changes from the current state, forgetting the ones recorded before.
+     */
+    public void mark() {
+        recording = true;
+        changes = 0;
+    }
+
+    /**
+     * Undoes all the changes since the mark, the board keeps recording from the same mark.
+     */
+    public void restore() {
+        if (!recording) {
+            throw new IllegalStateException("The board was not marked.");
+        }
+        for (int i = changes - 1; i >= 0; i--) {
+            buffer.put(HEADER + journal[i], previous[i]);
+        }
+        changes = 0;
+    }
+
+    public int get(int index) {
+        return buffer.get(HEADER + index) & 0xFF;
+    }
+
+    public void set(int index, int elements) {
+        byte current = buffer.get(HEADER + index);
+        if (current == (byte) elements) return;
+        if (recording) record(index, current);
+        buffer.put(HEADER + index, (byte) elements);
+    }
+
+    public void clear() {
+        if (recording) {
+            super.clear();
+            return;
+        }
+        // Clear in chunks, the blocks are not recorded. The buffer methods are called through
+        // Buffer, the ByteBuffer overrides of Java 9 do not exist at Java 8
+        ((Buffer) blocks).clear();
+        ((Buffer) blocks).position(HEADER);
+        while (blocks.remaining() > 0) {
+            blocks.put(ZEROS, 0, Math.min(CLEAR_CHUNK, blocks.remaining()));
+        }
+    }
+
+    /**
+     * Records the previous elements of a block.
+     * @param index The block linear position
+     * @param elements The previous elements mask
+     */
+    private void record(int index, byte elements) {
+        if (changes == journal.length) {
+            int size = Math.max(16, changes * 2);
+            journal = Arrays.copyOf(journal, size);
+            previous = Arrays.copyOf(previous, size);
+        }
+        journal[changes] = index;
+        previous[changes] = elements;
+        changes++;
+    }
+
+    /**
+     * Writes the header with the board size.
+     */
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, width);
+        buffer.putInt(12, height);
+    }
+
+    /**
+     * Returns the number of blocks of a board, that must fit a single buffer.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     * @return The blocks count
+     */
+    private static int getCells(int width, int height) {
+        long cells = (long) width * height;
+        if (cells > Integer.MAX_VALUE - HEADER) {
+            throw new IllegalArgumentException("The board is too large: " + width + "x" + height);
+        }
+        return (int) cells;
+    }
+}
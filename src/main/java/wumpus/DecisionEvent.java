@@ -0,0 +1,34 @@
+package wumpus;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder event of an agent choosing its next action, or its next plan for the
+ * planning agents. Disabled unless a recording enables <tt>wumpus.Decision</tt>.
+ */
+@Name("wumpus.Decision")
+@Label("Agent Decision")
+@Category("Wumpus")
+@Description("An agent choosing its next action or plan")
+@Enabled(false)
+@StackTrace(false)
+final class DecisionEvent extends Event {
+    @Label("Agent")
+    String agent;
+
+    @Label("Step")
+    int step;
+
+    @Label("Action")
+    @Description("The action chosen, the first one of a plan")
+    String action;
+
+    @Label("Plan Length")
+    int plan;
+}
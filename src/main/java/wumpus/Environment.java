@@ -6,6 +6,12 @@ import java.util.Scanner;
  * Represents the world environment.
  */
 public class Environment {
+    /**
+     * The score of dying and of having the gold at the end of the game.
+     */
+    public static final int DEATH_SCORE = -1000;
+    public static final int GOLD_SCORE = 1000;
+
     /**
      * The elements that can be found at the tiles.
      */
@@ -28,10 +34,11 @@ public class Environment {
     }
 
     /**
-     * The final outcome of the game.
+     * The final outcome of the game, STALLED when the game was stopped because the player was
+     * not making any progress.
      */
     public enum Result {
-        WIN, LOOSE
+        WIN, LOOSE, STALLED
     }
 
     /**
@@ -56,26 +63,52 @@ public class Environment {
     protected static int getScore(Player player) {
         int sum = 0;
         // Score if have deceased
-        if (player.isDead()) sum += -1000;
+        if (player.isDead()) sum += DEATH_SCORE;
         // Score if have picked the gold
-        if (player.hasGold()) sum += +1000;
+        if (player.hasGold()) sum += GOLD_SCORE;
         // Calculate the score for each action
         for(Action action : player.getActions()) {
-            switch (action) {
-                case GO_FORWARD:
-                case TURN_LEFT:
-                case TURN_RIGHT:
-                case GRAB:
-                    sum += -1;
-                    break;
-                case SHOOT_ARROW:
-                    sum += -10;
-                    break;
-            }
+            sum += getScore(action);
         }
         return sum;
     }
 
+    /**
+     * Returns the score of a single action.
+     * @param action The action taken
+     * @return The action score
+     */
+    protected static int getScore(Action action) {
+        switch (action) {
+            case GO_FORWARD:
+            case TURN_LEFT:
+            case TURN_RIGHT:
+            case GRAB:
+                return -1;
+            case SHOOT_ARROW:
+                return -10;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the bit that represents an element at the tiles elements mask.
+     * @param element The element
+     * @return The element bit
+     */
+    public static int getBit(Element element) {
+        return 1 << element.ordinal();
+    }
+
+    /**
+     * Returns the bit that represents a perception at the player perceptions mask.
+     * @param perception The perception
+     * @return The perception bit
+     */
+    public static int getBit(Perception perception) {
+        return 1 << perception.ordinal();
+    }
+
     /**
      * Returns the icon for a environment element.
      * @param element The element
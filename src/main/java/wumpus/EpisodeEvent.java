@@ -0,0 +1,36 @@
+package wumpus;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder event of a game played by an agent, from the reset of the board to the end
+ * of the game. Disabled unless a recording enables <tt>wumpus.Episode</tt>.
+ */
+@Name("wumpus.Episode")
+@Label("Episode")
+@Category("Wumpus")
+@Description("A game played by an agent, from the reset of the board to its end")
+@Enabled(false)
+@StackTrace(false)
+final class EpisodeEvent extends Event {
+    @Label("Agent")
+    String agent;
+
+    @Label("Layout Hash")
+    long layout;
+
+    @Label("Result")
+    String result;
+
+    @Label("Score")
+    int score;
+
+    @Label("Steps")
+    int steps;
+}
@@ -0,0 +1,146 @@
+package wumpus;
+
+import java.util.Arrays;
+
+import wumpus.Environment.Element;
+
+/**
+ * The positions of the Wumpus, the pits and the gold of a board, captured from a world so the
+ * same layout can be built ahead of time and played again at any other world of the same size.
+ */
+public class Layout {
+    private final int width;
+    private final int height;
+    private final int[] wumpus;
+    private final int[] pits;
+    private final int[] gold;
+
+    /**
+     * The layout constructor, the arrays hold the linear positions of each element and are owned
+     * by the layout.
+     * @param width The board width
+     * @param height The board height
+     * @param wumpus The Wumpus positions
+     * @param pits The pits positions
+     * @param gold The gold positions
+     */
+    public Layout(int width, int height, int[] wumpus, int[] pits, int[] gold) {
+        this.width = width;
+        this.height = height;
+        this.wumpus = wumpus;
+        this.pits = pits;
+        this.gold = gold;
+    }
+
+    /**
+     * Captures the layout of a board.
+     * @param board The board instance
+     * @return The layout instance
+     */
+    public static Layout of(Board board) {
+        int size = board.getWidth() * board.getHeight();
+        int wumpusBit = Environment.getBit(Element.WUMPUS);
+        int pitBit = Environment.getBit(Element.PIT);
+        int goldBit = Environment.getBit(Element.GOLD);
+        // Count the elements before collecting them
+        int wumpusCount = 0, pitsCount = 0, goldCount = 0;
+        for (int i = 0; i < size; i++) {
+            int elements = board.get(i);
+            if ((elements & wumpusBit) != 0) wumpusCount++;
+            if ((elements & pitBit) != 0) pitsCount++;
+            if ((elements & goldBit) != 0) goldCount++;
+        }
+        int[] wumpus = new int[wumpusCount];
+        int[] pits = new int[pitsCount];
+        int[] gold = new int[goldCount];
+        wumpusCount = pitsCount = goldCount = 0;
+        for (int i = 0; i < size; i++) {
+            int elements = board.get(i);
+            if ((elements & wumpusBit) != 0) wumpus[wumpusCount++] = i;
+            if ((elements & pitBit) != 0) pits[pitsCount++] = i;
+            if ((elements & goldBit) != 0) gold[goldCount++] = i;
+        }
+        return new Layout(board.getWidth(), board.getHeight(), wumpus, pits, gold);
+    }
+
+    /**
+     * Places the elements of this layout at a board.
+     * @param board The board instance
+     */
+    void apply(Board board) {
+        if (board.getWidth() != width || board.getHeight() != height) {
+            throw new IllegalArgumentException("The layout does not fit the board.");
+        }
+        for (int index : wumpus) board.add(index, Environment.getBit(Element.WUMPUS));
+        for (int index : pits) board.add(index, Environment.getBit(Element.PIT));
+        for (int index : gold) board.add(index, Environment.getBit(Element.GOLD));
+    }
+
+    /**
+     * Returns the board width.
+     * @return The width
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Returns the board height.
+     * @return The height
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Returns the Wumpus positions, the array must not be modified.
+     * @return The linear positions
+     */
+    public int[] getWumpus() { return wumpus; }
+
+    /**
+     * Returns the pits positions, the array must not be modified.
+     * @return The linear positions
+     */
+    public int[] getPits() { return pits; }
+
+    /**
+     * Returns the gold positions, the array must not be modified.
+     * @return The linear positions
+     */
+    public int[] getGold() { return gold; }
+
+    /**
+     * Returns a 64 bits hash of the layout, that identifies it at reports.
+     * @return The layout hash
+     */
+    public long getHash() {
+        long hash = ((long) width << 32) | height;
+        hash = mix(hash, wumpus);
+        hash = mix(hash, pits);
+        return mix(hash, gold);
+    }
+
+    /**
+     * Mixes the positions into a hash.
+     * @param hash The current hash
+     * @param positions The positions to mix
+     * @return The new hash
+     */
+    private static long mix(long hash, int[] positions) {
+        hash = (hash ^ positions.length) * 0x9E3779B97F4A7C15L;
+        for (int index : positions) {
+            hash = (hash ^ index) * 0xBF58476D1CE4E5B9L;
+            hash ^= hash >>> 31;
+        }
+        return hash;
+    }
+
+    public boolean equals(Object other) {
+        if (!(other instanceof Layout)) return false;
+        Layout layout = (Layout) other;
+        return width == layout.width && height == layout.height &&
+                Arrays.equals(wumpus, layout.wumpus) && Arrays.equals(pits, layout.pits) &&
+                Arrays.equals(gold, layout.gold);
+    }
+
+    public int hashCode() {
+        return (int) getHash();
+    }
+}
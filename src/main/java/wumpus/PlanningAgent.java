@@ -0,0 +1,19 @@
+package wumpus;
+
+import wumpus.Environment.Action;
+
+/**
+ * An Agent that can commit to a sequence of actions at once. The world executes the plan without
+ * calling the agent back until the plan ends, the player perceives something new, a forward step
+ * fails against a wall or the game ends. The remaining actions of an interrupted plan are
+ * discarded and the agent is asked for a new plan.
+ */
+public interface PlanningAgent extends Agent {
+    /**
+     * Executes every decision to determine the next actions.
+     * @param player The player instance
+     * @param plan The buffer to write the actions, at least one
+     * @return The number of actions written to the buffer
+     */
+    int getPlan(Player player, Action[] plan);
+}
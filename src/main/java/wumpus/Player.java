@@ -15,17 +15,21 @@ public class Player extends Object {
         N, E, S, W
     }
 
+    private static final Direction[] DIRECTIONS = Direction.values();
+
     private final World world;
     private int x, y;
 
     private Tile tile;
 
-    private ArrayList<Perception> perceptions = new ArrayList<Perception>();
+    private int perceptions = 0;
     private ArrayList<Action> actions = new ArrayList<Action>();
+    private int actionsScore = 0;
     private Direction direction = Direction.E;
     private boolean alive = true;
     private boolean gold = false;
     private int arrows = 3;
+    private int kills = 0;
 
     /**
      * Creates a new Player for the given world.
@@ -56,9 +60,44 @@ public class Player extends Object {
      */
     protected void reset() {
         arrows = 3;
+        kills = 0;
         gold = false;
         direction = Direction.E;
         actions.clear();
+        actionsScore = 0;
+    }
+
+    /**
+     * Copies the state of this player to a detached one, that can be read at another thread while
+     * this player keeps playing.
+     * @param target The detached player or <tt>null</tt> to create one
+     * @return The detached player
+     */
+    Player copyTo(Player target) {
+        if (target == null) target = new Player(world);
+        target.x = x;
+        target.y = y;
+        target.tile = tile;
+        target.perceptions = perceptions;
+        target.actions.clear();
+        for (int i = 0; i < actions.size(); i++) {
+            target.actions.add(actions.get(i));
+        }
+        target.actionsScore = actionsScore;
+        target.direction = direction;
+        target.alive = alive;
+        target.gold = gold;
+        target.arrows = arrows;
+        target.kills = kills;
+        return target;
+    }
+
+    /**
+     * Makes room for a number of actions, so recording them does not allocate.
+     * @param count The number of actions
+     */
+    protected void ensureActions(int count) {
+        actions.ensureCapacity(count);
     }
 
     /**
@@ -74,12 +113,14 @@ public class Player extends Object {
      * sensed from the new tile.
      */
     protected void setTile(int index) {
-        // Remove the Hunter from the
-        if (tile != null) {
+        // Remove the Hunter from the last tile, players at shared boards do not mark them
+        if (tile != null && !world.isShared()) {
             tile.remove(Element.HUNTER);
         }
         tile = world.getPosition(index);
-        tile.setItem(Environment.Element.HUNTER);
+        if (!world.isShared()) {
+            tile.setItem(Environment.Element.HUNTER);
+        }
         // 2D coordinates
         x = tile.getX();
         y = tile.getY();
@@ -100,26 +141,12 @@ public class Player extends Object {
     public Perception shootArrow() {
         if (arrows > 0) {
             arrows--;
-            int[] neighbors = getTile().getNeighbors();
             // Select the right neighbor to shoot
-            Tile neighbor = null;
-            switch (direction) {
-                case N:
-                    if (neighbors[0] > -1) neighbor = world.getPosition(neighbors[0]);
-                    break;
-                case E:
-                    if (neighbors[1] > -1) neighbor = world.getPosition(neighbors[1]);
-                    break;
-                case S:
-                    if (neighbors[2] > -1) neighbor = world.getPosition(neighbors[2]);
-                    break;
-                case W:
-                    if (neighbors[3] > -1) neighbor = world.getPosition(neighbors[3]);
-                    break;
-            }
+            int index = tile.getNeighbor(direction.ordinal());
+            Tile neighbor = index > -1 ? world.getPosition(index) : null;
             // Hear a scream after if killed Wumpus
-            if (neighbor != null && neighbor.contains(Element.WUMPUS)) {
-                neighbor.remove(Element.WUMPUS);
+            if (neighbor != null && neighbor.take(Element.WUMPUS)) {
+                kills++;
                 // Add the Scream to the current perception
                 return Perception.SCREAM;
             }
@@ -136,48 +163,24 @@ public class Player extends Object {
      */
     protected void setAction(Action action) {
         actions.add(action);
+        actionsScore += Environment.getScore(action);
         // Execute the action
         switch (action) {
             case GO_FORWARD:
-                int[] neighbors = tile.getNeighbors();
-                switch (direction) {
-                    case N:
-                        if (neighbors[0] > -1) setTile(neighbors[0]);
-                        break;
-                    case E:
-                        if (neighbors[1] > -1) setTile(neighbors[1]);
-                        break;
-                    case S:
-                        if (neighbors[2] > -1) setTile(neighbors[2]);
-                        break;
-                    case W:
-
-                        if (neighbors[3] > -1) setTile(neighbors[3]);
-                        break;
-                }
+                int neighbor = tile.getNeighbor(direction.ordinal());
+                if (neighbor > -1) setTile(neighbor);
                 break;
             case TURN_LEFT:
                 // Mover counter clockwise
-                switch (direction) {
-                    case N: direction = Direction.W; break;
-                    case W: direction = Direction.S; break;
-                    case S: direction = Direction.E; break;
-                    case E: direction = Direction.N; break;
-                }
+                direction = DIRECTIONS[(direction.ordinal() + 3) & 3];
                 break;
             case TURN_RIGHT:
                 // Mover clockwise
-                switch (direction) {
-                    case N: direction = Direction.E; break;
-                    case E: direction = Direction.S; break;
-                    case S: direction = Direction.W; break;
-                    case W: direction = Direction.N; break;
-                }
+                direction = DIRECTIONS[(direction.ordinal() + 1) & 3];
                 break;
             case GRAB:
                 // If tile has gold store and remove from the tile
-                if (tile.contains(Element.GOLD)) {
-                    tile.remove(Element.GOLD);
+                if (tile.take(Element.GOLD)) {
                     gold = true;
                 }
                 break;
@@ -212,7 +215,12 @@ public class Player extends Object {
      * @return The current score
      */
     public int getScore() {
-        return Environment.getScore(this);
+        int sum = actionsScore;
+        // Score if have deceased
+        if (!alive) sum += Environment.DEATH_SCORE;
+        // Score if have picked the gold
+        if (gold) sum += Environment.GOLD_SCORE;
+        return sum;
     }
 
     /**
@@ -220,41 +228,61 @@ public class Player extends Object {
      * @return The list of perceptions
      */
     protected ArrayList<Perception> getPerceptions() {
+        ArrayList<Perception> list = new ArrayList<Perception>();
+        for (Perception perception : Perception.values()) {
+            if (hasPerception(perception)) list.add(perception);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the perceptions sensed from the current tile as a mask of
+     * {@link Environment#getBit(Perception)} bits.
+     * @return The perceptions mask
+     */
+    public int getPerceptionBits() {
         return perceptions;
     }
 
+    /**
+     * Returns weather the perception was sensed from the current tile.
+     * @param perception The perception
+     * @return <tt>true</tt> if it was sensed
+     */
+    private boolean hasPerception(Perception perception) {
+        return (perceptions & Environment.getBit(perception)) != 0;
+    }
+
     /**
      * Sets the list of perceptions sensed from the current tile.
      */
     protected void setPerceptions() {
-        perceptions.clear();
+        int senses = 0;
         // Senses in the current tile
         if (tile.contains(Environment.Element.GOLD)) {
-            perceptions.add(Perception.GLITTER);
+            senses |= Environment.getBit(Perception.GLITTER);
         }
         // Get the neighbors and find the senses
-        int[] neighbors = tile.getNeighbors();
-        for (int i = 0; i < neighbors.length; i++) {
+        for (int i = 0; i < 4; i++) {
+            int index = tile.getNeighbor(i);
             // Sense bumps
-            if (neighbors[i] == -1) {
-                if (    (i == 0 && direction == Direction.N) ||
-                        (i == 1 && direction == Direction.E) ||
-                        (i == 2 && direction == Direction.S) ||
-                        (i == 3 && direction == Direction.W)) {
-                    perceptions.add(Perception.BUMP);
+            if (index == -1) {
+                if (i == direction.ordinal()) {
+                    senses |= Environment.getBit(Perception.BUMP);
                 }
             } else {
-                Tile neighbor = world.getPosition(neighbors[i]);
+                Tile neighbor = world.getPosition(index);
                 // Sense a breeze when near a pit
                 if (neighbor.contains(Element.PIT)) {
-                    perceptions.add(Perception.BREEZE);
+                    senses |= Environment.getBit(Perception.BREEZE);
                 }
                 // Sense a stench when near a Wumpus
                 if (neighbor.contains(Element.WUMPUS)) {
-                    perceptions.add(Perception.STENCH);
+                    senses |= Environment.getBit(Perception.STENCH);
                 }
             }
         }
+        perceptions = senses;
     }
 
     /**
@@ -263,7 +291,7 @@ public class Player extends Object {
      */
     protected void setPerceptions(Perception value) {
         setPerceptions();
-        perceptions.add(value);
+        perceptions |= Environment.getBit(value);
     }
 
     /**
@@ -284,6 +312,18 @@ public class Player extends Object {
      */
     public boolean hasArrows() { return arrows > 0; }
 
+    /**
+     * Returns the number of arrows left.
+     * @return The arrows count
+     */
+    public int getArrows() { return arrows; }
+
+    /**
+     * Returns how many Wumpus the player has killed.
+     * @return The kills count
+     */
+    protected int getKills() { return kills; }
+
     /**
      * Returns if player have picked the gold.
      * @return <tt>true</tt> if has the gold.
@@ -295,7 +335,7 @@ public class Player extends Object {
      * @return If has a bump perception
      */
     public boolean hasBump() {
-        return perceptions.contains(Perception.BUMP);
+        return hasPerception(Perception.BUMP);
     }
 
     /**
@@ -303,7 +343,7 @@ public class Player extends Object {
      * @return <tt>true</tt> if player's feels a breeze
      */
     public boolean hasBreeze() {
-        return perceptions.contains(Perception.BREEZE);
+        return hasPerception(Perception.BREEZE);
     }
 
     /**
@@ -311,7 +351,7 @@ public class Player extends Object {
      * @return <tt>true</tt> if player's feels a stench
      */
     public boolean hasStench() {
-        return perceptions.contains(Perception.STENCH);
+        return hasPerception(Perception.STENCH);
     }
 
     /**
@@ -319,7 +359,7 @@ public class Player extends Object {
      * @return <tt>true</tt> if player's hears a scream
      */
     public boolean hasScream() {
-        return perceptions.contains(Perception.SCREAM);
+        return hasPerception(Perception.SCREAM);
     }
 
     /**
@@ -327,7 +367,7 @@ public class Player extends Object {
      * @return <tt>true</tt> if player's sees the glitter.
      */
     public boolean hasGlitter() {
-        return perceptions.contains(Perception.GLITTER);
+        return hasPerception(Perception.GLITTER);
     }
 
     /**
@@ -350,7 +390,7 @@ public class Player extends Object {
         // Score
         output.append("Score: ").append(getScore()).append("\n");
         // Perceptions
-        output.append("Perceptions: ").append(perceptions.toString());
+        output.append("Perceptions: ").append(getPerceptions().toString());
 
         return output.toString();
     }
@@ -0,0 +1,234 @@
+package wumpus;
+
+import java.util.Arrays;
+
+import wumpus.Environment.Element;
+
+/**
+ * A board whose elements are derived on demand from a hash of the seed and the block position,
+ * so boards far larger than the memory can be explored. Only the blocks that were changed, by the
+ * hunter passing by, a Wumpus killed or the gold taken, are stored at a sparse overlay, and the
+ * cost of a game depends on the blocks visited instead of the board area.
+ * <p>
+ * The worlds over this board must not place any random element, set the number of pits, Wumpus
+ * and gold of the world to zero and the densities of this board instead. The start position and
+ * its neighbors can be marked as safe.
+ */
+public class ProceduralBoard extends Board {
+    private static final int FRACTION_BITS = 21;
+    private static final long FRACTION_MASK = (1L << FRACTION_BITS) - 1;
+    private static final int MAX_SAFE = 5;
+
+    private long seed = 0;
+    private long pitThreshold;
+    private long wumpusThreshold;
+    private long goldThreshold;
+    private final int[] safe = new int[MAX_SAFE];
+    private int safeCount = 0;
+    private final IntMap overlay = new IntMap();
+
+    /**
+     * Creates a new board with given dimensions, up to 2^31 blocks.
+     * @param width The horizontal constraint of the board
+     * @param height The vertical constraint of the board
+     */
+    public ProceduralBoard(int width, int height) {
+        super(width, height);
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The board is too large: " + width + "x" + height);
+        }
+        setPitDensity(0.2);
+        setWumpusDensity(0.02);
+        setGoldDensity(0.02);
+    }
+
+    /**
+     * Sets the seed the elements are derived from.
+     * @param value The board seed
+     */
+    public void setSeed(long value) {
+        seed = value;
+    }
+
+    /**
+     * Sets the probability of a block having a pit.
+     * @param value The density between 0 and 1
+     */
+    public void setPitDensity(double value) {
+        pitThreshold = getThreshold(value);
+    }
+
+    /**
+     * Sets the probability of a block having a Wumpus.
+     * @param value The density between 0 and 1
+     */
+    public void setWumpusDensity(double value) {
+        wumpusThreshold = getThreshold(value);
+    }
+
+    /**
+     * Sets the probability of a block having gold.
+     * @param value The density between 0 and 1
+     */
+    public void setGoldDensity(double value) {
+        goldThreshold = getThreshold(value);
+    }
+
+    /**
+     * Marks a block and its neighbors as free of dangers, replacing the ones marked before.
+     * @param index The block linear position
+     */
+    public void setSafe(int index) {
+        int x = index % width;
+        int y = index / width;
+        safeCount = 0;
+        addSafe(index);
+        if (y > 0) addSafe(index - width);
+        if (x + 1 < width) addSafe(index + 1);
+        if (y + 1 < height) addSafe(index + width);
+        if (x > 0) addSafe(index - 1);
+    }
+
+    /**
+     * Returns the number of blocks stored at the overlay.
+     * @return The blocks count
+     */
+    public int getChanged() {
+        return overlay.size();
+    }
+
+    public int get(int index) {
+        int elements = overlay.get(index);
+        return elements != IntMap.MISSING ? elements : generate(index);
+    }
+
+    public void set(int index, int elements) {
+        overlay.put(index, elements);
+    }
+
+    /**
+     * Forgets all the changes, the board is generated again from the seed.
+     */
+    public void clear() {
+        overlay.clear();
+    }
+
+    /**
+     * Derives the elements of a block from the seed.
+     * @param index The block linear position
+     * @return The elements mask
+     */
+    private int generate(int index) {
+        long hash = mix(seed ^ mix(index + 1L));
+        int elements = 0;
+        if ((hash & FRACTION_MASK) < goldThreshold) {
+            elements |= Environment.getBit(Element.GOLD);
+        }
+        for (int i = 0; i < safeCount; i++) {
+            if (safe[i] == index) return elements;
+        }
+        if (((hash >>> FRACTION_BITS) & FRACTION_MASK) < pitThreshold) {
+            elements |= Environment.getBit(Element.PIT);
+        }
+        if (((hash >>> (2 * FRACTION_BITS)) & FRACTION_MASK) < wumpusThreshold) {
+            elements |= Environment.getBit(Element.WUMPUS);
+        }
+        return elements;
+    }
+
+    /**
+     * Adds a block to the safe ones.
+     * @param index The block linear position
+     */
+    private void addSafe(int index) {
+        safe[safeCount++] = index;
+    }
+
+    /**
+     * Returns the hash threshold of a density.
+     * @param density The density between 0 and 1
+     * @return The threshold
+     */
+    private static long getThreshold(double density) {
+        return (long) (Math.max(0, Math.min(1, density)) * (1L << FRACTION_BITS));
+    }
+
+    /**
+     * Mixes the bits of a value with the SplitMix64 finalizer.
+     * @param value The value
+     * @return The mixed value
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * An open addressing map of non negative integers to integers, without boxing.
+     */
+    private static class IntMap {
+        static final int MISSING = -1;
+        private static final int EMPTY = -1;
+
+        private int[] keys = new int[16];
+        private int[] values = new int[16];
+        private int size = 0;
+
+        IntMap() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+                if (keys[i] == EMPTY) return MISSING;
+            }
+        }
+
+        void put(int key, int value) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                keys[i] = key;
+                // Keep the load under one half
+                if (++size * 2 > keys.length) {
+                    values[i] = value;
+                    grow();
+                    return;
+                }
+            }
+            values[i] = value;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package wumpus;
+
+import jdk.jfr.Event;
+
+/**
+ * The flight recorder events of a world, reused as the world is played by a single thread. Only
+ * this class and the events link against <tt>jdk.jfr</tt>, and a world only creates a recorder
+ * when the runtime has the flight recorder, so the engine still loads at the runtimes without
+ * it, such as the Java 8 ones before 8u262. The check can not be made here, verifying this
+ * class already loads the events.
+ */
+final class Recorder {
+    private final EpisodeEvent episodeEvent = new EpisodeEvent();
+    private final DecisionEvent decisionEvent = new DecisionEvent();
+    private final ResetEvent resetEvent = new ResetEvent();
+
+    /**
+     * Starts the measure of an episode if some recording has it enabled.
+     * @return <tt>true</tt> if the event was started
+     */
+    boolean beginEpisode() {
+        return begin(episodeEvent);
+    }
+
+    /**
+     * Records the event of an episode started by {@link #beginEpisode()}.
+     * @param agent The agent class name
+     * @param layout The layout hash
+     * @param result The episode result
+     * @param score The final score
+     * @param steps The number of steps taken
+     */
+    void commitEpisode(String agent, long layout, Environment.Result result, int score,
+                       int steps) {
+        EpisodeEvent event = episodeEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.agent = agent;
+            event.layout = layout;
+            event.result = result.toString();
+            event.score = score;
+            event.steps = steps;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts the measure of an agent decision if some recording has it enabled.
+     * @return <tt>true</tt> if the event was started
+     */
+    boolean beginDecision() {
+        return begin(decisionEvent);
+    }
+
+    /**
+     * Records the event of a decision started by {@link #beginDecision()}.
+     * @param agent The agent class name
+     * @param step The step of the decision
+     * @param action The action chosen
+     * @param length The plan length
+     */
+    void commitDecision(String agent, int step, Environment.Action action, int length) {
+        DecisionEvent event = decisionEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.agent = agent;
+            event.step = step;
+            event.action = action.toString();
+            event.plan = length;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts the measure of a board reset if some recording has it enabled.
+     * @return <tt>true</tt> if the event was started
+     */
+    boolean beginReset() {
+        return begin(resetEvent);
+    }
+
+    /**
+     * Records the event of a reset started by {@link #beginReset()}.
+     * @param width The board width
+     * @param height The board height
+     * @param random Weather the elements were placed at random
+     */
+    void commitReset(int width, int height, boolean random) {
+        ResetEvent event = resetEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = width;
+            event.height = height;
+            event.random = random;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts the measure of an event if some recording has it enabled.
+     * @param event The event instance
+     * @return <tt>true</tt> if the event was started
+     */
+    private static boolean begin(Event event) {
+        if (!event.isEnabled()) return false;
+        event.begin();
+        return true;
+    }
+}
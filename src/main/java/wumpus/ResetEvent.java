@@ -0,0 +1,31 @@
+package wumpus;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder event of a world reset, placing random elements or a saved layout. Disabled
+ * unless a recording enables <tt>wumpus.Reset</tt>.
+ */
+@Name("wumpus.Reset")
+@Label("World Reset")
+@Category("Wumpus")
+@Description("A world reset, placing random elements or a saved layout on the board")
+@Enabled(false)
+@StackTrace(false)
+final class ResetEvent extends Event {
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Random")
+    @Description("Weather the elements were placed at random")
+    boolean random;
+}
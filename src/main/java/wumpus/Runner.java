@@ -3,16 +3,13 @@ package wumpus;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import wumpus.Environment.Action;
-import wumpus.Environment.Result;
-
 /**
- * The iteration of plays that the player can take until reaches its end.
+ * The iteration of plays that the player can take until reaches its end. The actions must be
+ * taken with {@link World#step(Environment.Action)}, that keeps the game status this iteration
+ * relies on.
  */
 public class Runner implements Iterable<Player>, Iterator<Player> {
     private final World world;
-    private int iterations = 0;
-    private int maxIterations;
 
     /**
      * The runner constructor.
@@ -20,7 +17,6 @@ public class Runner implements Iterable<Player>, Iterator<Player> {
      */
     public Runner(World world) {
         this.world = world;
-        this.maxIterations = world.getMaxSteps();
     }
 
     /**
@@ -36,9 +32,7 @@ public class Runner implements Iterable<Player>, Iterator<Player> {
      * @return
      */
     public boolean hasNext() {
-        Player player = world.getPlayer();
-        return iterations < maxIterations && world.getResult() != Result.WIN &&
-                player.isAlive() && player.getLastAction() != Action.EXIT;
+        return world.getStatus() == World.RUNNING;
     }
 
     /**
@@ -47,7 +41,6 @@ public class Runner implements Iterable<Player>, Iterator<Player> {
      */
     public Player next() {
         if (!hasNext()) throw new NoSuchElementException();
-        iterations++;
         return world.getPlayer();
     }
 
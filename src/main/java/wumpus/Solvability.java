@@ -0,0 +1,225 @@
+package wumpus;
+
+import java.util.Arrays;
+
+/**
+ * Tells if the gold of a layout can be reached at all, by flooding the safe blocks from the start
+ * position. The blocks are kept as bitmasks of the board linear positions, so each flood step
+ * moves the whole frontier with a few shifts per 64 blocks. When the gold is not reachable the
+ * Wumpus next to the flooded blocks are shot one at a time, while there are arrows, and the
+ * flood goes on from there.
+ * <p>
+ * The classifier keeps its buffers between layouts of the same board size and is not thread
+ * safe, each thread must have its own.
+ */
+public class Solvability {
+    /**
+     * The classes of layouts.
+     */
+    public enum Label { SOLVABLE, SHOOTING, UNSOLVABLE }
+
+    private final int width;
+    private final int height;
+    private final int words;
+
+    // Blocks masks
+    private final long[] all;
+    private final long[] notFirstColumn;
+    private final long[] notLastColumn;
+    private final long[] pits;
+    private final long[] gold;
+    private final long[] wumpus;
+    private final long[] reach;
+    private final long[] next;
+    private final long[] shifted;
+
+    private Label label;
+    private int distance = -1;
+
+    /**
+     * The classifier constructor.
+     * @param width The board width
+     * @param height The board height
+     */
+    public Solvability(int width, int height) {
+        this.width = width;
+        this.height = height;
+        words = (width * height + 63) >>> 6;
+        all = new long[words];
+        notFirstColumn = new long[words];
+        notLastColumn = new long[words];
+        pits = new long[words];
+        gold = new long[words];
+        wumpus = new long[words];
+        reach = new long[words];
+        next = new long[words];
+        shifted = new long[words];
+        for (int i = 0; i < width * height; i++) {
+            set(all, i);
+            if (i % width != 0) set(notFirstColumn, i);
+            if (i % width != width - 1) set(notLastColumn, i);
+        }
+    }
+
+    /**
+     * Classifies a layout and records the length of the shortest safe path to the gold.
+     * @param layout The layout
+     * @param start The player start position
+     * @param arrows The number of arrows of the player
+     * @return The layout class
+     */
+    public Label classify(Layout layout, int start, int arrows) {
+        if (layout.getWidth() != width || layout.getHeight() != height) {
+            throw new IllegalArgumentException("The layout does not fit the classifier.");
+        }
+        Arrays.fill(pits, 0);
+        Arrays.fill(wumpus, 0);
+        Arrays.fill(gold, 0);
+        for (int index : layout.getPits()) set(pits, index);
+        for (int index : layout.getWumpus()) set(wumpus, index);
+        for (int index : layout.getGold()) set(gold, index);
+
+        distance = flood(start, wumpus, reach);
+        if (distance >= 0) {
+            label = Label.SOLVABLE;
+        } else {
+            distance = shoot(start, wumpus, arrows);
+            label = distance >= 0 ? Label.SHOOTING : Label.UNSOLVABLE;
+        }
+        return label;
+    }
+
+    /**
+     * Returns the class of the last classified layout.
+     * @return The layout class or <tt>null</tt> if none was classified
+     */
+    public Label getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the length of the shortest safe path to the gold of the last classified layout,
+     * after shooting the Wumpus if needed.
+     * @return The number of moves or -1 when the layout is unsolvable
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    /**
+     * Shoots each Wumpus next to the flooded blocks and floods again from the start.
+     * @param start The player start position
+     * @param wumpus The Wumpus still alive
+     * @param arrows The number of arrows left
+     * @return The shortest distance to the gold or -1 when it is not reachable
+     */
+    private int shoot(int start, long[] wumpus, int arrows) {
+        if (arrows == 0) return -1;
+        flood(start, wumpus, reach);
+        // Only the Wumpus next to some reachable block can be shot
+        long[] targets = new long[words];
+        expand(reach, targets);
+        int best = -1;
+        for (int i = 0; i < words; i++) {
+            long bits = targets[i] & wumpus[i];
+            while (bits != 0) {
+                long bit = Long.lowestOneBit(bits);
+                bits ^= bit;
+                long[] alive = wumpus.clone();
+                alive[i] ^= bit;
+                int distance = flood(start, alive, reach);
+                if (distance < 0) distance = shoot(start, alive, arrows - 1);
+                if (distance >= 0 && (best < 0 || distance < best)) best = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Floods the safe blocks from the start position.
+     * @param start The player start position
+     * @param wumpus The Wumpus still alive
+     * @param reach The buffer to keep the flooded blocks
+     * @return The distance to the nearest gold or -1 when it is not reachable
+     */
+    private int flood(int start, long[] wumpus, long[] reach) {
+        Arrays.fill(reach, 0);
+        set(reach, start);
+
+        for (int steps = 0; ; steps++) {
+            boolean found = false;
+            for (int i = 0; i < words; i++) {
+                if ((reach[i] & gold[i]) != 0) found = true;
+            }
+            if (found) return steps;
+            // Move the frontier one block at every direction
+            expand(reach, next);
+            boolean changed = false;
+            for (int i = 0; i < words; i++) {
+                long value = reach[i] | (next[i] & ~pits[i] & ~wumpus[i]);
+                if (value != reach[i]) changed = true;
+                reach[i] = value;
+            }
+            if (!changed) return -1;
+        }
+    }
+
+    /**
+     * Sets the blocks next to the given ones.
+     * @param blocks The blocks
+     * @param neighbors The buffer to write the neighbors
+     */
+    private void expand(long[] blocks, long[] neighbors) {
+        shiftLeft(blocks, 1, shifted);
+        for (int i = 0; i < words; i++) neighbors[i] = shifted[i] & notFirstColumn[i];
+        shiftRight(blocks, 1, shifted);
+        for (int i = 0; i < words; i++) neighbors[i] |= shifted[i] & notLastColumn[i];
+        shiftLeft(blocks, width, shifted);
+        for (int i = 0; i < words; i++) neighbors[i] |= shifted[i];
+        shiftRight(blocks, width, shifted);
+        for (int i = 0; i < words; i++) neighbors[i] = (neighbors[i] | shifted[i]) & all[i];
+    }
+
+    /**
+     * Moves every bit to a higher position.
+     * @param source The bits
+     * @param count The number of positions
+     * @param target The buffer to write the moved bits
+     */
+    private void shiftLeft(long[] source, int count, long[] target) {
+        int wordShift = count >>> 6;
+        int bitShift = count & 63;
+        for (int i = words - 1; i >= 0; i--) {
+            int from = i - wordShift;
+            long value = from >= 0 ? source[from] << bitShift : 0;
+            if (bitShift != 0 && from > 0) value |= source[from - 1] >>> (64 - bitShift);
+            target[i] = value;
+        }
+    }
+
+    /**
+     * Moves every bit to a lower position.
+     * @param source The bits
+     * @param count The number of positions
+     * @param target The buffer to write the moved bits
+     */
+    private void shiftRight(long[] source, int count, long[] target) {
+        int wordShift = count >>> 6;
+        int bitShift = count & 63;
+        for (int i = 0; i < words; i++) {
+            int from = i + wordShift;
+            long value = from < words ? source[from] >>> bitShift : 0;
+            if (bitShift != 0 && from + 1 < words) value |= source[from + 1] << (64 - bitShift);
+            target[i] = value;
+        }
+    }
+
+    /**
+     * Sets the bit of a block.
+     * @param bits The bits
+     * @param index The block linear position
+     */
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+}
@@ -0,0 +1,332 @@
+package wumpus;
+
+import java.util.Arrays;
+
+import wumpus.Environment.Action;
+
+/**
+ * Finds the best score a player could get at a layout if it could see the whole board. It is a
+ * best-first search of the cheapest actions to get the gold, over the player states (tile,
+ * direction, gold, arrows and Wumpus alive) packed into a single long. The action costs are
+ * the ones of {@link Environment#getScore(Action)}, and since they are small integers the frontier
+ * is a ring of buckets, one for each cost, instead of a heap. The states reached are kept at
+ * arrays indexed by the packed state when all the states of the board fit a small bound, and at a
+ * hash table otherwise, so the memory of large boards follows the states the search visits
+ * instead of all the states there are. The search gives up past a maximum number of states, and
+ * at once when there are more Wumpus than the state has bits for.
+ * <p>
+ * The game score does not require the player to get back with the gold, so the best score is to
+ * grab the gold and exit, or to exit at once when the gold can not be reached. The episode step
+ * limit is not taken into account, it is far from the cost of any optimal plan.
+ * <p>
+ * The solver keeps its buffers between layouts and is not thread safe, each thread must have its
+ * own.
+ */
+public class Solver {
+    /**
+     * The best score of a layout whose search has given up.
+     */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private static final int MAX_WUMPUS = 8;
+    private static final int DEFAULT_MAX_STATES = 1 << 19;
+    private static final long MAX_DENSE_STATES = 1 << 20;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int GIVEN_UP = -2;
+    private static final int MAX_ARROWS = 3;
+    private static final int[] OFFSET_X = {0, 1, 0, -1};
+    private static final int[] OFFSET_Y = {-1, 0, 1, 0};
+
+    // Action costs
+    private static final int FORWARD_COST = -Environment.getScore(Action.GO_FORWARD);
+    private static final int TURN_LEFT_COST = -Environment.getScore(Action.TURN_LEFT);
+    private static final int TURN_RIGHT_COST = -Environment.getScore(Action.TURN_RIGHT);
+    private static final int GRAB_COST = -Environment.getScore(Action.GRAB);
+    private static final int SHOOT_COST = -Environment.getScore(Action.SHOOT_ARROW);
+    private static final int BUCKETS = Math.max(Math.max(FORWARD_COST, GRAB_COST),
+            Math.max(Math.max(TURN_LEFT_COST, TURN_RIGHT_COST), SHOOT_COST)) + 1;
+
+    private final int width;
+    private final int height;
+    private final int tileBits;
+    private boolean returning = false;
+    private int maxStates = DEFAULT_MAX_STATES;
+
+    // Board, indexed by the tile linear position
+    private final boolean[] blocked;
+    private final boolean[] gold;
+    private final int[] wumpus;
+
+    // Search, the states reached indexed by the packed state or at an open addressing table, the
+    // stale ones have an old stamp
+    private boolean dense = false;
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] costs = new int[INITIAL_CAPACITY];
+    private int[] stamps = new int[INITIAL_CAPACITY];
+    private int stamp = 0;
+    private int size = 0;
+    private final long[][] buckets = new long[BUCKETS][16];
+    private final int[] sizes = new int[BUCKETS];
+
+    private int cost = -1;
+
+    /**
+     * The solver constructor.
+     * @param width The board width
+     * @param height The board height
+     */
+    public Solver(int width, int height) {
+        this.width = width;
+        this.height = height;
+        tileBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(width * height - 1));
+        blocked = new boolean[width * height];
+        gold = new boolean[width * height];
+        wumpus = new int[width * height];
+    }
+
+    /**
+     * Sets weather the player must get back to the start with the gold, as needed to win the
+     * game, instead of exiting as soon as the gold is taken.
+     * @param value <tt>true</tt> to get back to the start
+     */
+    public void setReturning(boolean value) {
+        returning = value;
+    }
+
+    /**
+     * Sets the number of states the search may reach before giving up.
+     * @param value The number of states
+     */
+    public void setMaxStates(int value) {
+        maxStates = value;
+    }
+
+    /**
+     * Returns the best score of a layout, for a player that starts facing east.
+     * @param layout The layout
+     * @param start The player start position
+     * @param arrows The number of arrows of the player
+     * @return The best score or {@link #UNKNOWN} when the layout has too many Wumpus or the search
+     * has reached too many states
+     */
+    public int solve(Layout layout, int start, int arrows) {
+        if (layout.getWidth() != width || layout.getHeight() != height) {
+            throw new IllegalArgumentException("The layout does not fit the solver.");
+        }
+        // The Wumpus alive are bits of the packed state
+        if (layout.getWumpus().length > MAX_WUMPUS) {
+            cost = GIVEN_UP;
+            return UNKNOWN;
+        }
+        // Build the board
+        Arrays.fill(blocked, false);
+        Arrays.fill(gold, false);
+        Arrays.fill(wumpus, -1);
+        for (int index : layout.getPits()) blocked[index] = true;
+        for (int index : layout.getGold()) gold[index] = true;
+        int[] positions = layout.getWumpus();
+        for (int i = 0; i < positions.length; i++) wumpus[positions[i]] = i;
+
+        cost = search(start, Math.min(arrows, MAX_ARROWS), positions.length);
+        if (cost == GIVEN_UP) return UNKNOWN;
+        return cost < 0 ? 0 : Math.max(0, Environment.GOLD_SCORE - cost);
+    }
+
+    /**
+     * Returns the cost of the actions to get the gold at the last solved layout.
+     * @return The cost, -1 when the gold can not be reached or -2 when the search has given up
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * Searches the cheapest actions to get the gold.
+     * @param start The player start position
+     * @param arrows The number of arrows of the player
+     * @param count The number of Wumpus
+     * @return The cost, -1 when the gold can not be reached or -2 when it has given up
+     */
+    private int search(int start, int arrows, int count) {
+        long space = 1L << (tileBits + 5 + count);
+        dense = space <= MAX_DENSE_STATES;
+        if (dense && costs.length < space) {
+            costs = new int[(int) space];
+            stamps = new int[(int) space];
+            stamp = 0;
+        } else if (!dense && keys.length < getCapacity()) {
+            // Size the table for the most states at once, so no search grows it
+            int capacity = Math.max(getCapacity(), costs.length);
+            keys = new long[capacity];
+            if (costs.length < capacity) {
+                costs = new int[capacity];
+                stamps = new int[capacity];
+                stamp = 0;
+            }
+        }
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        size = 0;
+        Arrays.fill(sizes, 0);
+
+        int pending = relax(pack(start, Player.Direction.E.ordinal(), 0, arrows,
+                (1 << count) - 1), 0);
+        for (int current = 0; pending > 0; current++) {
+            int bucket = current % BUCKETS;
+            while (sizes[bucket] > 0) {
+                long state = buckets[bucket][--sizes[bucket]];
+                pending--;
+                if (size >= maxStates) return GIVEN_UP;
+                // Skip the states already reached by a cheaper path
+                if (costs[find(state)] != current) continue;
+
+                int tile = (int) (state & ((1L << tileBits) - 1));
+                int direction = (int) (state >>> tileBits) & 3;
+                int hasGold = (int) (state >>> (tileBits + 2)) & 1;
+                int arrowsLeft = (int) (state >>> (tileBits + 3)) & 3;
+                int alive = (int) (state >>> (tileBits + 5));
+                if (hasGold == 1 && (!returning || tile == start)) return current;
+
+                // Turn to both sides
+                pending += relax(pack(tile, (direction + 3) & 3, hasGold, arrowsLeft, alive),
+                        current + TURN_LEFT_COST);
+                pending += relax(pack(tile, (direction + 1) & 3, hasGold, arrowsLeft, alive),
+                        current + TURN_RIGHT_COST);
+                // Grab the gold
+                if (hasGold == 0 && gold[tile]) {
+                    pending += relax(pack(tile, direction, 1, arrowsLeft, alive),
+                            current + GRAB_COST);
+                }
+                int neighbor = getNeighbor(tile, direction);
+                if (neighbor < 0) continue;
+                // Move forward to a safe tile
+                int target = wumpus[neighbor];
+                boolean threat = target >= 0 && (alive & (1 << target)) != 0;
+                if (!blocked[neighbor] && !threat) {
+                    pending += relax(pack(neighbor, direction, hasGold, arrowsLeft, alive),
+                            current + FORWARD_COST);
+                }
+                // Shoot the Wumpus ahead
+                if (threat && arrowsLeft > 0) {
+                    pending += relax(pack(tile, direction, hasGold, arrowsLeft - 1,
+                            alive & ~(1 << target)), current + SHOOT_COST);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the size of the hash table that keeps the maximum number of states at most three
+     * quarters full.
+     * @return The power of two capacity
+     */
+    private int getCapacity() {
+        long capacity = Long.highestOneBit(Math.max(maxStates, 1) * 4L / 3) * 2;
+        return (int) Math.min(capacity, 1 << 30);
+    }
+
+    /**
+     * Queues a state if it was not reached yet by a cheaper path.
+     * @param state The packed state
+     * @param cost The cost to reach it
+     * @return The number of states queued
+     */
+    private int relax(long state, int cost) {
+        int slot = find(state);
+        if (stamps[slot] == stamp) {
+            if (costs[slot] <= cost) return 0;
+        } else {
+            size++;
+            if (!dense) {
+                // Keep the table at most three quarters full
+                if (size * 4 > keys.length * 3) {
+                    grow();
+                    slot = find(state);
+                }
+                keys[slot] = state;
+            }
+            stamps[slot] = stamp;
+        }
+        costs[slot] = cost;
+        push(state, cost);
+        return 1;
+    }
+
+    /**
+     * Queues a state at the bucket of its cost.
+     * @param state The packed state
+     * @param cost The cost to reach it
+     */
+    private void push(long state, int cost) {
+        int bucket = cost % BUCKETS;
+        if (sizes[bucket] == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], sizes[bucket] * 2);
+        }
+        buckets[bucket][sizes[bucket]++] = state;
+    }
+
+    /**
+     * Returns the slot of a state at the table of the states reached, or the free slot where it
+     * would go.
+     * @param state The packed state
+     * @return The slot index
+     */
+    private int find(long state) {
+        if (dense) return (int) state;
+        int mask = keys.length - 1;
+        // Mix all the bits, the packed states are too regular to use their low bits
+        int slot = (int) (state * 0x9E3779B97F4A7C15L >>> 32) & mask;
+        while (stamps[slot] == stamp && keys[slot] != state) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the table of the states reached, moving the states of the current search.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCosts = costs;
+        int[] oldStamps = stamps;
+        keys = new long[oldKeys.length * 2];
+        costs = new int[oldKeys.length * 2];
+        stamps = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStamps[i] != stamp) continue;
+            int slot = find(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            costs[slot] = oldCosts[i];
+            stamps[slot] = stamp;
+        }
+    }
+
+    /**
+     * Packs a player state into a single long.
+     * @param tile The tile linear position
+     * @param direction The direction ordinal
+     * @param gold 1 if the player has the gold
+     * @param arrows The number of arrows
+     * @param alive The bits of the Wumpus still alive
+     * @return The packed state
+     */
+    private long pack(int tile, int direction, int gold, int arrows, int alive) {
+        return tile | (long) direction << tileBits | (long) gold << (tileBits + 2) |
+                (long) arrows << (tileBits + 3) | (long) alive << (tileBits + 5);
+    }
+
+    /**
+     * Returns the tile at a side of another one.
+     * @param tile The tile linear position
+     * @param side The side ordinal, clockwise from north
+     * @return The neighbor linear position or -1 when out of the board
+     */
+    private int getNeighbor(int tile, int side) {
+        int x = tile % width + OFFSET_X[side];
+        int y = tile / width + OFFSET_Y[side];
+        return x >= 0 && x < width && y >= 0 && y < height ? x + y * width : -1;
+    }
+}
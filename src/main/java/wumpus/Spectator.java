@@ -0,0 +1,225 @@
+package wumpus;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+import wumpus.Environment.Element;
+
+/**
+ * Shows the games of a world as they are played without slowing them down. The world publishes a
+ * snapshot of the board around the hunter to a single slot only when the renderer is waiting for
+ * a new frame, which costs a volatile read at the other steps. The renderer thread draws the slot
+ * at a capped frame rate, so the frames in between are dropped, along with the episodes per
+ * second and scores of the games counted by all the worlds.
+ * <p>
+ * The slot is written under a stamped lock that is never held by the renderer: it reads with an
+ * optimistic stamp and tries again if the world has written the slot meanwhile.
+ */
+public class Spectator {
+    private static final int VIEW = 12;
+    private static final String CLEAR_SCREEN = "\033[H\033[2J";
+
+    // The frame slot
+    private final StampedLock lock = new StampedLock();
+    private final int[] cells = new int[VIEW * VIEW];
+    private int viewX, viewY, viewWidth, viewHeight;
+    private int hunter, direction, score, steps;
+    private boolean alive;
+    private long frames = 0;
+
+    // The renderer copy of the frame
+    private final int[] shown = new int[VIEW * VIEW];
+
+    private volatile boolean waiting = true;
+    private final LongAdder episodes = new LongAdder();
+    private final LongAdder scoreSum = new LongAdder();
+    private final AtomicBoolean attached = new AtomicBoolean();
+    private Thread renderer;
+
+    /**
+     * Claims this spectator for a single world, so only one of the worlds of a campaign is
+     * watched.
+     * @return <tt>true</tt> if the spectator was free
+     */
+    public boolean claim() {
+        return attached.compareAndSet(false, true);
+    }
+
+    /**
+     * Returns weather the renderer is waiting for a new frame.
+     * @return <tt>true</tt> if a frame should be published
+     */
+    boolean isWaiting() {
+        return waiting;
+    }
+
+    /**
+     * Copies the board around the hunter and its state to the slot.
+     * @param world The world instance
+     */
+    void publish(World world) {
+        Board board = world.getBoard();
+        Player player = world.getPlayer();
+        int x = player.getX();
+        int y = player.getY();
+        long stamp = lock.writeLock();
+        try {
+            viewWidth = Math.min(VIEW, world.getWidth());
+            viewHeight = Math.min(VIEW, world.getHeight());
+            viewX = Math.max(0, Math.min(x - viewWidth / 2, world.getWidth() - viewWidth));
+            viewY = Math.max(0, Math.min(y - viewHeight / 2, world.getHeight() - viewHeight));
+            for (int j = 0; j < viewHeight; j++) {
+                for (int i = 0; i < viewWidth; i++) {
+                    cells[i + j * VIEW] = board.get(world.getIndex(viewX + i, viewY + j));
+                }
+            }
+            hunter = (x - viewX) + (y - viewY) * VIEW;
+            direction = player.getDirection().ordinal();
+            alive = player.isAlive();
+            score = player.getScore();
+            steps = world.getSteps();
+            frames++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        waiting = false;
+    }
+
+    /**
+     * Counts a finished game, of any world.
+     * @param score The final score
+     */
+    public void count(int score) {
+        scoreSum.add(score);
+        episodes.increment();
+    }
+
+    /**
+     * Starts the renderer thread.
+     * @param out The stream to draw the frames
+     * @param fps The maximum frames per second
+     */
+    public synchronized void start(final PrintStream out, final int fps) {
+        if (renderer != null) return;
+        renderer = new Thread(new Runnable() {
+            public void run() {
+                render(out, fps);
+            }
+        }, "spectator");
+        renderer.setDaemon(true);
+        renderer.start();
+    }
+
+    /**
+     * Stops the renderer thread.
+     * @throws InterruptedException
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (renderer == null) return;
+        renderer.interrupt();
+        renderer.join();
+        renderer = null;
+    }
+
+    /**
+     * Draws the frames until interrupted.
+     * @param out The stream to draw the frames
+     * @param fps The maximum frames per second
+     */
+    private void render(PrintStream out, int fps) {
+        long interval = 1000000000L / Math.max(1, fps);
+        long start = System.nanoTime();
+        long lastFrame = -1;
+        StringBuilder output = new StringBuilder();
+        while (!Thread.currentThread().isInterrupted()) {
+            long next = System.nanoTime() + interval;
+            // Read the slot until a consistent copy is taken
+            int width, height, shownHunter, shownDirection, shownScore, shownSteps;
+            boolean shownAlive;
+            long frame;
+            long stamp;
+            do {
+                stamp = lock.tryOptimisticRead();
+                width = viewWidth;
+                height = viewHeight;
+                shownHunter = hunter;
+                shownDirection = direction;
+                shownAlive = alive;
+                shownScore = score;
+                shownSteps = steps;
+                frame = frames;
+                System.arraycopy(cells, 0, shown, 0, cells.length);
+            } while (!lock.validate(stamp));
+            waiting = true;
+
+            if (frame != lastFrame) {
+                lastFrame = frame;
+                long finished = episodes.sum();
+                double elapsed = (System.nanoTime() - start) / 1e9;
+                output.setLength(0);
+                output.append(CLEAR_SCREEN);
+                draw(output, width, height, shownHunter, shownDirection, shownAlive);
+                output.append(String.format("Score: %d  Steps: %d%n", shownScore, shownSteps));
+                output.append(String.format("Episodes: %d  %.0f/s  Mean score: %.2f%n",
+                        finished, elapsed > 0 ? finished / elapsed : 0,
+                        finished > 0 ? (double) scoreSum.sum() / finished : 0));
+                out.print(output);
+                out.flush();
+            }
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+                } catch (InterruptedException error) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the copied view as an ASCII grid.
+     * @param output The output buffer
+     * @param width The view width
+     * @param height The view height
+     * @param hunter The hunter position at the view
+     * @param direction The hunter direction ordinal
+     * @param alive Weather the hunter is alive
+     */
+    private void draw(StringBuilder output, int width, int height, int hunter, int direction,
+                      boolean alive) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) output.append("+---");
+            output.append("+\n");
+            for (int x = 0; x < width; x++) {
+                int index = x + y * VIEW;
+                output.append('|');
+                if (index == hunter) {
+                    output.append(alive ? "↑→↓←".charAt(direction) : '†');
+                } else {
+                    output.append(' ');
+                }
+                output.append(getIcon(shown[index], Element.WUMPUS, Element.PIT));
+                output.append(getIcon(shown[index], Element.GOLD, Element.GOLD));
+            }
+            output.append("|\n");
+        }
+        for (int x = 0; x < width; x++) output.append("+---");
+        output.append("+\n");
+    }
+
+    /**
+     * Returns the icon of the first element found at a block.
+     * @param elements The block elements mask
+     * @param first The first element to look for
+     * @param second The second element to look for
+     * @return The icon or a blank
+     */
+    private static String getIcon(int elements, Element first, Element second) {
+        if ((elements & Environment.getBit(first)) != 0) return Environment.getIcon(first);
+        if ((elements & Environment.getBit(second)) != 0) return Environment.getIcon(second);
+        return " ";
+    }
+}
@@ -0,0 +1,130 @@
+package wumpus;
+
+import java.util.Arrays;
+
+/**
+ * Detects episodes where the player keeps wandering without learning anything new. The player
+ * state (tile, direction, arrows, gold and Wumpus alive) is hashed after each step and stored
+ * until the player enters a tile for the first time, hears a scream or grabs the gold, which are
+ * the only events that bring new knowledge to an agent.
+ * <p>
+ * For deterministic agents a repeated state with no new knowledge means the agent is in a loop.
+ * For any agent, too many steps with no new knowledge means the agent is stuck.
+ */
+class StallDetector {
+    private static final int EMPTY = 0;
+
+    private final boolean cycles;
+    private final int window;
+    private final int maxSteps;
+
+    private final LongSet states;
+    private final LongSet tiles;
+    private int idleSteps = 0;
+    private int kills = 0;
+    private boolean gold = false;
+
+    /**
+     * The detector constructor.
+     * @param cycles Weather to stop at the first repeated state
+     * @param window The number of steps with no new knowledge to stop, zero to disable
+     * @param maxSteps The maximum steps of an episode
+     */
+    StallDetector(boolean cycles, int window, int maxSteps) {
+        this.cycles = cycles;
+        this.window = window;
+        this.maxSteps = maxSteps;
+        states = new LongSet(maxSteps + 1);
+        tiles = new LongSet(maxSteps + 1);
+    }
+
+    /**
+     * Returns weather this detector was created with the given settings.
+     * @param cycles Weather to stop at the first repeated state
+     * @param window The number of steps with no new knowledge to stop
+     * @param maxSteps The maximum steps of an episode
+     * @return <tt>true</tt> if the settings are the same
+     */
+    boolean isConfigured(boolean cycles, int window, int maxSteps) {
+        return this.cycles == cycles && this.window == window && this.maxSteps == maxSteps;
+    }
+
+    /**
+     * Forgets everything of the last episode.
+     */
+    void reset() {
+        states.clear();
+        tiles.clear();
+        idleSteps = 0;
+        kills = 0;
+        gold = false;
+    }
+
+    /**
+     * Records the player state after a step.
+     * @param player The player instance
+     * @return <tt>true</tt> if the episode is stalled
+     */
+    boolean update(Player player) {
+        int tile = player.getTile().getIndex();
+        boolean event = player.getKills() != kills || player.hasGold() != gold;
+        kills = player.getKills();
+        gold = player.hasGold();
+        boolean discovery = tiles.add(tile) | event;
+        if (discovery) {
+            states.clear();
+            idleSteps = 0;
+        } else {
+            idleSteps++;
+        }
+
+        long state = ((long) tile << 8) | (player.getDirection().ordinal() << 4) |
+                (Math.min(player.getArrows(), 3) << 2) | (player.hasGold() ? 2 : 0) |
+                (player.getKills() == 0 ? 1 : 0);
+        boolean repeated = !states.add(state);
+
+        return (cycles && repeated) || (window > 0 && idleSteps >= window);
+    }
+
+    /**
+     * An open addressing set of longs that is cleared in constant time by moving to the next
+     * generation instead of erasing the slots.
+     */
+    private static class LongSet {
+        private final long[] keys;
+        private final int[] generations;
+        private final int mask;
+        private int generation = 1;
+
+        LongSet(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+            keys = new long[size];
+            generations = new int[size];
+            mask = size - 1;
+        }
+
+        void clear() {
+            generation++;
+            if (generation == EMPTY) {
+                Arrays.fill(generations, EMPTY);
+                generation = 1;
+            }
+        }
+
+        /**
+         * Adds the key to the set.
+         * @return <tt>true</tt> if the key was not at the set
+         */
+        boolean add(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (generations[slot] == generation) {
+                if (keys[slot] == key) return false;
+                slot = (slot + 1) & mask;
+            }
+            generations[slot] = generation;
+            keys[slot] = key;
+            return true;
+        }
+    }
+}
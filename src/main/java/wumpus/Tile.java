@@ -1,35 +1,35 @@
 package wumpus;
 
-import java.util.HashSet;
-
 import wumpus.Environment.Element;
 
 /**
- * Describes a single board block, that holds information on what have in.
+ * Describes a single board block, that holds information on what have in. The elements are kept
+ * by the {@link Board}, the tile is only a view of one of its blocks.
  */
 public class Tile {
-    private int x, y, w, h;
-    private HashSet<Environment.Element> elements = new HashSet<Element>();
+    private final Board board;
+    private final int index;
+    private final int x, y, w, h;
 
     /**
      * The Tile constructor.
+     * @param board The board that stores the elements
      * @param position The linear position in the board
-     * @param width The width of the board
-     * @param height The height of the board
      */
-    public Tile(int position, int width, int height) {
-        x = position % width;
-        y = position / width;
-        w = width;
-        h = height;
-        clear();
+    public Tile(Board board, int position) {
+        this.board = board;
+        index = position;
+        w = board.getWidth();
+        h = board.getHeight();
+        x = position % w;
+        y = position / w;
     }
 
     /**
      * Returns this block linear position at the board.
      * @return The linear index
      */
-    public int getIndex() { return x + y * w; }
+    public int getIndex() { return index; }
 
     /**
      * Returns some block linear position from a 2D position.
@@ -75,11 +75,26 @@ public class Tile {
         return neighbors;
     }
 
+    /**
+     * Returns the linear position of the block that shares the border at one side, without
+     * allocating the whole neighbors array.
+     * @param side The side index in clockwise order {N, E, S, W}
+     * @return The linear index or -1 when out of the board
+     */
+    public int getNeighbor(int side) {
+        switch (side) {
+            case 0: return y > 0     ? getIndex(x, y - 1) : -1;
+            case 1: return x + 1 < w ? getIndex(x + 1, y) : -1;
+            case 2: return y + 1 < h ? getIndex(x, y + 1) : -1;
+            default: return x > 0    ? getIndex(x - 1, y) : -1;
+        }
+    }
+
     /**
      * Resets all elements on this block.
      */
     public void clear() {
-        elements.clear();
+        board.set(index, 0);
     }
 
     /**
@@ -87,7 +102,17 @@ public class Tile {
      * @param item The item to remove
      */
     public void remove(Environment.Element item) {
-        elements.remove(item);
+        board.remove(index, Environment.getBit(item));
+    }
+
+    /**
+     * Removes an item from this block, when many players share the board only one of them can
+     * take the same item.
+     * @param item The item to take
+     * @return <tt>true</tt> if the item was at this block and was taken by this call
+     */
+    public boolean take(Environment.Element item) {
+        return board.remove(index, Environment.getBit(item));
     }
 
     /**
@@ -95,7 +120,7 @@ public class Tile {
      * @return <tt>true</tt> if contains no elements
      */
     public boolean isEmpty() {
-        return elements.isEmpty();
+        return board.get(index) == 0;
     }
 
     /**
@@ -104,7 +129,7 @@ public class Tile {
      * @return <tt>true</tt> if not contains the given element
      */
     public boolean contains(Element element) {
-        return elements.contains(element);
+        return (board.get(index) & Environment.getBit(element)) != 0;
     }
 
     /**
@@ -112,6 +137,6 @@ public class Tile {
      * @param element The element
      */
     public void setItem(Element element)  {
-        elements.add(element);
+        board.add(index, Environment.getBit(element));
     }
 }
@@ -0,0 +1,138 @@
+package wumpus;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded table of agent decisions shared by all the threads of a campaign, so a deterministic
+ * agent that reaches a decision state it has already seen at another episode can reuse the
+ * decision instead of computing it again. The keys are 64 bits hashes of the decision state and
+ * the values are small non negative integers that encode the decision.
+ * <p>
+ * Every entry is a single long, with the high bits of the key, a reference bit and the value, so
+ * the table is an array of primitive longs updated with compare-and-set and never locks. A key can
+ * be stored at any slot of a small window after its home slot. When the window is full the clock
+ * hand sweeps it: recently used entries lose their reference bit and the first entry without it
+ * is replaced.
+ */
+public class TranspositionTable {
+    public static final int MISS = -1;
+
+    private static final int VALUE_BITS = 24;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long REFERENCE = 1L << VALUE_BITS;
+    private static final int TAG_SHIFT = VALUE_BITS + 1;
+    private static final int WINDOW = 8;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * The table constructor.
+     * @param capacity The maximum number of entries, rounded up to a power of two
+     */
+    public TranspositionTable(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, WINDOW) - 1) << 1;
+        slots = new AtomicLongArray(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Returns the value stored for a key.
+     * @param key The decision state hash
+     * @return The value or {@link #MISS} when the key is not at the table
+     */
+    public int get(long key) {
+        long tag = getTag(key);
+        int home = (int) key & mask;
+        for (int i = 0; i < WINDOW; i++) {
+            int index = (home + i) & mask;
+            long entry = slots.get(index);
+            if (entry != 0 && (entry >>> TAG_SHIFT) == tag) {
+                // Mark as recently used, losing the race to another reader is fine
+                if ((entry & REFERENCE) == 0) {
+                    slots.compareAndSet(index, entry, entry | REFERENCE);
+                }
+                hits.increment();
+                return (int) (entry & VALUE_MASK);
+            }
+        }
+        misses.increment();
+        return MISS;
+    }
+
+    /**
+     * Stores the value of a key, replacing a not recently used entry if there is no room.
+     * @param key The decision state hash
+     * @param value The value, between 0 and 2^24 - 1
+     */
+    public void put(long key, int value) {
+        if (value < 0 || value > VALUE_MASK) {
+            throw new IllegalArgumentException("The value does not fit the table: " + value);
+        }
+        long tag = getTag(key);
+        long entry = (tag << TAG_SHIFT) | value;
+        int home = (int) key & mask;
+        // Use an empty slot or the slot of the same key
+        for (int i = 0; i < WINDOW; i++) {
+            int index = (home + i) & mask;
+            long current = slots.get(index);
+            if (current == 0) {
+                if (slots.compareAndSet(index, 0, entry)) return;
+                current = slots.get(index);
+            }
+            if ((current >>> TAG_SHIFT) == tag) return;
+        }
+        // Sweep the window clearing the reference bits until an entry can be replaced
+        int hand = (int) (key >>> 32) & (WINDOW - 1);
+        for (int i = 0; i < 2 * WINDOW; i++) {
+            int index = (home + ((hand + i) & (WINDOW - 1))) & mask;
+            long current = slots.get(index);
+            if ((current & REFERENCE) != 0) {
+                slots.compareAndSet(index, current, current & ~REFERENCE);
+            } else if (slots.compareAndSet(index, current, entry)) {
+                evictions.increment();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     * @return The capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of lookups that found their key.
+     * @return The hits count
+     */
+    public long getHits() { return hits.sum(); }
+
+    /**
+     * Returns the number of lookups that did not find their key.
+     * @return The misses count
+     */
+    public long getMisses() { return misses.sum(); }
+
+    /**
+     * Returns the number of entries replaced to make room for others.
+     * @return The evictions count
+     */
+    public long getEvictions() { return evictions.sum(); }
+
+    /**
+     * Returns the high bits of a key stored at the entries, never zero so an empty slot is never
+     * taken as a stored key.
+     * @param key The decision state hash
+     * @return The key tag
+     */
+    private static long getTag(long key) {
+        return (key >>> TAG_SHIFT) | 1;
+    }
+}
@@ -12,27 +12,58 @@ import wumpus.Environment.Perception;
  * render of it.
  */
 public class World {
+    /**
+     * The status codes returned by {@link #step(Action)}, at the lowest bits of the code.
+     */
+    public static final int RUNNING = 0;
+    public static final int WIN = 1;
+    public static final int DEAD = 2;
+    public static final int EXIT = 3;
+    public static final int TIMEOUT = 4;
+    public static final int STALLED = 5;
+    public static final int STATUS_MASK = 0xF;
+    public static final int PERCEPTIONS_SHIFT = 4;
+
     private static final int DEFAULT_MAX_STEPS = 200;
+    private static final int MAX_PLAN_LENGTH = 16;
     private static final int RANDOM_MAX_TRIES = 20;
     private static final int DEFAULT_GOLD = 1;
     private static final int DEFAULT_WUMPUS = 1;
     private static final int DEFAULT_PITS = 2;
+    private static final int MAX_RESERVED_ACTIONS = 4096;
 
     private final int width;
     private final int height;
-    private final int startPosition;
+    private int startPosition;
 
     private int gold = DEFAULT_GOLD;
     private int pits = DEFAULT_PITS;
     private int wumpus = DEFAULT_WUMPUS;
     private int maxSteps = DEFAULT_MAX_STEPS;
 
+    private boolean cycleDetection = false;
+    private int stallWindow = 0;
+    private StallDetector stallDetector;
+    private boolean stalled = false;
+
+    private int steps = 0;
+    private int status = RUNNING;
+    private final Action[] plan = new Action[MAX_PLAN_LENGTH];
+
     private boolean randomize = true;
+    private final Random random = new Random();
     private HashMap<Integer, Environment.Element> items = new HashMap<Integer, Element>();
 
     private String agentName;
     private final Player player;
-    private final Tile[] tiles;
+    private final Board board;
+    private boolean shared = false;
+    private Spectator spectator;
+    private AllocationMeter meter;
+
+    // The flight recorder events, none when the runtime has no flight recorder
+    private static final boolean RECORDING = isRecordingSupported();
+    private final Recorder recorder = RECORDING ? new Recorder() : null;
 
     /**
      * Creates a new world with given dimensions.
@@ -43,16 +74,21 @@ public class World {
      */
     public World(int width, int height) throws InterruptedException,
             InternalError {
-        if (width == 1 && height == 1) {
+        this(new ArrayBoard(width, height));
+    }
+
+    /**
+     * Creates a new world over the given board storage.
+     * @param board The board instance
+     * @throws InternalError
+     */
+    public World(Board board) throws InternalError {
+        if (board.getWidth() == 1 && board.getHeight() == 1) {
             throw new InternalError("The world size must be greater than 1x1.");
         }
-        this.width = width;
-        this.height = height;
-        // Generate the board matrix (WxH)
-        tiles = new Tile[width * height];
-        for (int i = 0; i < width * height; i++) {
-            tiles[i] = new Tile(i, width, height);
-        }
+        this.board = board;
+        this.width = board.getWidth();
+        this.height = board.getHeight();
         // Saves the start position to check the objective
         startPosition = getIndex(0, height - 1);
         // Set the player
@@ -65,24 +101,192 @@ public class World {
      * @throws InterruptedException
      */
     public void execute(Agent agent) throws InterruptedException {
+        boolean recorded = recorder != null && recorder.beginEpisode();
+        long mark = meter != null ? meter.start() : 0;
+        reset();
+        if (meter != null) meter.addReset(mark);
+        // The layout is only built when the episode is recorded
+        long layout = recorded ? getLayout().getHash() : 0;
+        play(agent);
+        finish(recorded, layout);
+    }
+
+    /**
+     * Execute an agent that plays the game automatically at a layout built ahead of time.
+     * @param agent The agent instance
+     * @param layout The board layout
+     */
+    public void execute(Agent agent, Layout layout) {
+        boolean recorded = recorder != null && recorder.beginEpisode();
+        long mark = meter != null ? meter.start() : 0;
+        reset(layout);
+        if (meter != null) meter.addReset(mark);
+        play(agent);
+        finish(recorded, layout.getHash());
+    }
+
+    /**
+     * Finishes the episode measures and records its event.
+     * @param recorded Weather the episode event was started
+     * @param layout The layout hash
+     */
+    private void finish(boolean recorded, long layout) {
+        if (meter != null) meter.finish(steps);
+        if (recorded) {
+            recorder.commitEpisode(agentName, layout, getResult(), player.getScore(), steps);
+        }
+    }
+
+    /**
+     * Returns weather the runtime has the flight recorder, checked before any event class is
+     * loaded.
+     * @return <tt>true</tt> if the events can be recorded
+     */
+    private static boolean isRecordingSupported() {
+        try {
+            Class.forName("jdk.jfr.Event", false, World.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException error) {
+            return false;
+        } catch (LinkageError error) {
+            return false;
+        }
+    }
+
+    /**
+     * Plays the game with an agent from its current state until it reaches its end.
+     * @param agent The agent instance
+     */
+    public void play(Agent agent) {
         agentName = agent.getClass().getName();
 
-        for (Player player : run()) {
+        if (agent instanceof PlanningAgent) {
+            execute((PlanningAgent) agent);
+            return;
+        }
+        if (meter != null) {
+            play(agent, meter);
+            return;
+        }
+        while (status == RUNNING) {
+            boolean recorded = recorder != null && recorder.beginDecision();
             agent.beforeAction(player);
-            Action actions = agent.getAction(player);
-            player.setAction(actions);
+            Action action = agent.getAction(player);
+            if (recorded) commit(action, 1);
+            step(action);
             agent.afterAction(player);
         }
     }
 
     /**
-     * Starts playing until game reachs its end.
-     * @return The plays iteration
-     * @throws InterruptedException
+     * Executes the plans of an agent, calling it back only when the plan ends, the player
+     * perceives something new or a forward step fails.
+     * @param agent The agent instance
      */
-    private Runner run() throws InterruptedException {
-        reset();
-        return new Runner(this);
+    private void execute(PlanningAgent agent) {
+        final int bump = Environment.getBit(Perception.BUMP);
+        long mark = meter != null ? meter.now() : 0;
+
+        while (status == RUNNING) {
+            boolean recorded = recorder != null && recorder.beginDecision();
+            agent.beforeAction(player);
+            int length = agent.getPlan(player, plan);
+            if (meter != null) mark = meter.addAgent(mark);
+            if (length < 1 || length > plan.length) {
+                throw new IllegalStateException("Invalid plan length: " + length);
+            }
+            if (recorded) commit(plan[0], length);
+            // The bump only tells the player is facing a wall, it changes with the turns
+            int perceptions = player.getPerceptionBits() & ~bump;
+            for (int i = 0; i < length; i++) {
+                Action action = plan[i];
+                int tile = player.getTile().getIndex();
+                int code = step(action);
+                if (meter != null) mark = meter.addEngine(mark);
+                if (status != RUNNING) break;
+                if (((code >>> PERCEPTIONS_SHIFT) & ~bump) != perceptions) break;
+                if (action == Action.GO_FORWARD && player.getTile().getIndex() == tile) break;
+            }
+            agent.afterAction(player);
+            if (meter != null) mark = meter.addAgent(mark);
+        }
+    }
+
+    /**
+     * Plays the game with an agent charging the allocations of the agent and the engine apart.
+     * @param agent The agent instance
+     * @param meter The allocation meter
+     */
+    private void play(Agent agent, AllocationMeter meter) {
+        long mark = meter.now();
+        while (status == RUNNING) {
+            boolean recorded = recorder != null && recorder.beginDecision();
+            agent.beforeAction(player);
+            Action action = agent.getAction(player);
+            mark = meter.addAgent(mark);
+            if (recorded) commit(action, 1);
+            step(action);
+            mark = meter.addEngine(mark);
+            agent.afterAction(player);
+            mark = meter.addAgent(mark);
+        }
+    }
+
+    /**
+     * Records the event of an agent decision.
+     * @param action The action chosen
+     * @param length The plan length
+     */
+    private void commit(Action action, int length) {
+        recorder.commitDecision(agentName, steps, action, length);
+    }
+
+    /**
+     * Executes a single action of the player, updating its position, perceptions and score, and
+     * checks if the game has ended. The returned code packs the game status at the lowest bits
+     * ({@link #RUNNING}, {@link #WIN}, {@link #DEAD}, {@link #EXIT}, {@link #TIMEOUT} or
+     * {@link #STALLED}) and the player perceptions bits above {@link #PERCEPTIONS_SHIFT}.
+     * @param action The action to take
+     * @return The packed status code
+     */
+    public int step(Action action) {
+        if (status != RUNNING) {
+            throw new IllegalStateException("The game has already ended.");
+        }
+        player.setAction(action);
+        steps++;
+
+        if (player.isDead()) {
+            status = DEAD;
+        } else if (player.hasGold() && player.getTile().getIndex() == startPosition) {
+            status = WIN;
+        } else if (action == Action.EXIT) {
+            status = EXIT;
+        } else if (stallDetector != null && stallDetector.update(player)) {
+            stalled = true;
+            status = STALLED;
+        } else if (steps >= maxSteps) {
+            status = TIMEOUT;
+        }
+        if (spectator != null && spectator.isWaiting()) spectator.publish(this);
+
+        return status | player.getPerceptionBits() << PERCEPTIONS_SHIFT;
+    }
+
+    /**
+     * Returns the status of the game, {@link #RUNNING} until it reaches its end.
+     * @return The status code
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the number of steps taken since the last reset.
+     * @return The steps count
+     */
+    public int getSteps() {
+        return steps;
     }
 
     /**
@@ -109,6 +313,58 @@ public class World {
         maxSteps = value;
     }
 
+    /**
+     * Sets the seed of the random generator used to place the dangers and the gold, so the next
+     * layouts can be reproduced.
+     * @param seed The random seed
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Sets weather to stop the game when the player returns to a state it has been before
+     * without perceiving anything new since. Only agents that always take the same action for
+     * the same history of perceptions should be stopped this way.
+     * @param value <tt>true</tt> to stop the cycles
+     */
+    public void setCycleDetection(boolean value) {
+        cycleDetection = value;
+    }
+
+    /**
+     * Sets the number of steps without perceiving anything new to stop the game.
+     * @param value The number of steps, zero to never stop
+     */
+    public void setStallWindow(int value) {
+        stallWindow = value;
+    }
+
+    /**
+     * Sets the spectator that shows the games of this world while they are played.
+     * @param value The spectator or <tt>null</tt> to not show the games
+     */
+    public void setSpectator(Spectator value) {
+        spectator = value;
+    }
+
+    /**
+     * Sets the meter of the bytes allocated by the games of this world, it must be used only by
+     * the thread that plays them.
+     * @param value The meter or <tt>null</tt> to not measure the allocations
+     */
+    public void setAllocationMeter(AllocationMeter value) {
+        meter = value;
+    }
+
+    /**
+     * Returns weather the game was stopped because the player was not making progress.
+     * @return <tt>true</tt> if the game is stalled
+     */
+    public boolean isStalled() {
+        return stalled;
+    }
+
     /**
      * Set the number of pits on the board.
      * @param value
@@ -143,6 +399,22 @@ public class World {
         setItem(Element.WUMPUS, x, y);
     }
 
+    /**
+     * Set the number of gold on the board.
+     * @param value
+     */
+    public void setGold(int value) {
+        gold = value;
+    }
+
+    /**
+     * Returns the number of gold on the board.
+     * @return The gold count
+     */
+    public int getGold() {
+        return gold;
+    }
+
     /**
      * Sets the Gold at given coordinate.
      * @param x The horizontal position
@@ -178,20 +450,14 @@ public class World {
      * @throws InterruptedException When reaches too many tries
      */
     private void setRandom(Environment.Element element, int times) throws InterruptedException {
-        Random random = new Random();
-        int tries = 0;
-        // Set the starting point neighbors as safe
-        int[] safeBlocks = player.getTile().getNeighbors();
-
         for(int i = 0; i < times; i++) {
+            int tries = 0;
             Tile position;
             // Find an empty block to set the element
             while (true) {
                 int z = random.nextInt(width * height - 1);
-                position = tiles[z];
-                if(position.isEmpty() &&
-                        z != safeBlocks[0] && z != safeBlocks[1]  && z != safeBlocks[2]  &&
-                        z != safeBlocks[3]) {
+                position = board.getTile(z);
+                if(position.isEmpty() && isRandomPosition(z)) {
                     position.setItem(element);
                     break;
                 }
@@ -206,6 +472,19 @@ public class World {
         }
     }
 
+    /**
+     * Returns weather the random layouts can place an element at a position. The start position
+     * and its neighbors are kept safe, and the last position of the board is never drawn.
+     * @param index The linear position
+     * @return <tt>true</tt> if an element can be placed
+     */
+    public boolean isRandomPosition(int index) {
+        if (index < 0 || index >= width * height - 1) return false;
+        int dx = Math.abs(index % width - startPosition % width);
+        int dy = Math.abs(index / width - startPosition / width);
+        return dx + dy > 1;
+    }
+
     /**
      * Returns the index from a given 2D position.
      * @param x The horizontal position
@@ -222,7 +501,7 @@ public class World {
      * @return The block instance
      */
     public Tile getPosition(int index) {
-        return tiles[index];
+        return board.getTile(index);
     }
 
     /**
@@ -233,7 +512,7 @@ public class World {
      */
     public Tile getPosition(int x, int y) {
         int i = getIndex(x, y);
-        return tiles[i];
+        return board.getTile(i);
     }
 
     /**
@@ -242,6 +521,42 @@ public class World {
      */
     public Player getPlayer() { return player; }
 
+    /**
+     * Returns the board storage.
+     * @return The board instance
+     */
+    public Board getBoard() { return board; }
+
+    /**
+     * Sets weather the board is shared with other players. The board of a shared world is
+     * prepared by its owner, the reset only puts the player back at its start position, and the
+     * player does not mark the tiles it passes by.
+     * @param value <tt>true</tt> if the board is shared
+     */
+    void setShared(boolean value) {
+        shared = value;
+    }
+
+    /**
+     * Returns weather the board is shared with other players.
+     * @return <tt>true</tt> if the board is shared
+     */
+    boolean isShared() { return shared; }
+
+    /**
+     * Sets the position where the player starts and must return with the gold.
+     * @param index The block linear position
+     */
+    void setStartPosition(int index) {
+        startPosition = index;
+    }
+
+    /**
+     * Returns the position where the player starts and must return with the gold.
+     * @return The block linear position
+     */
+    public int getStartPosition() { return startPosition; }
+
     /**
      * Returns the board width.
      * @return The width
@@ -260,6 +575,7 @@ public class World {
      * @return The outcome of the game
      */
     public Environment.Result getResult() {
+        if (stalled) return Environment.Result.STALLED;
         if (player.isAlive() && player.hasGold() && player.getTile().getIndex() == startPosition) {
             return Environment.Result.WIN;
         }
@@ -271,15 +587,14 @@ public class World {
      * @throws InterruptedException
      */
     public void reset() throws InterruptedException {
+        boolean recorded = recorder != null && recorder.beginReset();
         // Reset all blocks
-        for (int i = 0; i < tiles.length; i++) {
-            tiles[i].clear();
-        }
-        // Reset the player agent
-        player.setTile(startPosition);
-        player.reset();
+        if (!shared) board.clear();
+        resetPlayer();
         // Set the dangers
-        if (randomize) {
+        if (shared) {
+            // The board is set by its owner
+        } else if (randomize) {
             setRandom(Element.WUMPUS, wumpus);
             setRandom(Environment.Element.PIT, pits);
             // Set the objective
@@ -290,6 +605,75 @@ public class World {
                 tile.setItem(items.get(index));
             }
         }
+        // Senses the start position
+        player.setPerceptions();
+        if (recorded) commit(randomize && !shared);
+    }
+
+    /**
+     * Resets the board to a layout built ahead of time.
+     * @param layout The board layout
+     */
+    public void reset(Layout layout) {
+        if (shared) {
+            throw new IllegalStateException("The board is shared with other players.");
+        }
+        boolean recorded = recorder != null && recorder.beginReset();
+        board.clear();
+        resetPlayer();
+        layout.apply(board);
+        // Senses the start position
+        player.setPerceptions();
+        if (recorded) commit(false);
+    }
+
+    /**
+     * Records the event of a board reset.
+     * @param random Weather the elements were placed at random
+     */
+    private void commit(boolean random) {
+        recorder.commitReset(width, height, random);
+    }
+
+    /**
+     * Puts the player back at the start position keeping the board as it is, to play again a
+     * board that was built or saved before.
+     */
+    public void restart() {
+        resetPlayer();
+        // Senses the start position
+        player.setPerceptions();
+    }
+
+    /**
+     * Returns the current layout of the board.
+     * @return The layout instance
+     */
+    public Layout getLayout() {
+        return Layout.of(board);
+    }
+
+    /**
+     * Puts the player back at the start position and resets the game status.
+     */
+    private void resetPlayer() {
+        // Reset the player agent
+        player.setTile(startPosition);
+        player.reset();
+        // Grow the actions list at the reset instead of at the steps
+        player.ensureActions(Math.min(maxSteps, MAX_RESERVED_ACTIONS));
+        // Reset the game status
+        steps = 0;
+        status = maxSteps > 0 ? RUNNING : TIMEOUT;
+        stalled = false;
+        if (!cycleDetection && stallWindow == 0) {
+            stallDetector = null;
+        } else if (stallDetector != null &&
+                stallDetector.isConfigured(cycleDetection, stallWindow, maxSteps)) {
+            stallDetector.reset();
+        } else {
+            stallDetector = new StallDetector(cycleDetection, stallWindow, maxSteps);
+        }
     }
 
     /**
@@ -317,7 +701,7 @@ public class World {
                         default:
                             Tile tile = getPosition(x, y);
                             String line = " 1 |";
-                            if (tile.contains(Element.HUNTER)) {
+                            if (tile.getIndex() == player.getTile().getIndex()) {
                                 line = line.replace("1", Environment.getIcon(player));
                             }
                             // Erase any non-replaced items
@@ -376,7 +760,7 @@ public class World {
                                     line = line.replace("2", Environment.getIcon(Element.GOLD));
                                 }
                             } else {
-                                if (tile.contains(Environment.Element.HUNTER)) {
+                                if (tile.getIndex() == player.getTile().getIndex()) {
                                     line = line.replace("1", Environment.getIcon(player));
                                 }
                                 if (tile.contains(Environment.Element.GOLD)) {